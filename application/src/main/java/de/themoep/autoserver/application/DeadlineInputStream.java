@@ -0,0 +1,58 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * Input stream of a socket which fails once a fixed deadline passed, no matter how slow the data trickles in
+ */
+public class DeadlineInputStream extends FilterInputStream {
+	private final Socket socket;
+	private final long deadline;
+
+	public DeadlineInputStream(Socket socket, long deadline) throws IOException {
+		super(socket.getInputStream());
+		this.socket = socket;
+		this.deadline = deadline;
+	}
+
+	private void updateTimeout() throws IOException {
+		long remaining = deadline - System.currentTimeMillis();
+		if (remaining <= 0) {
+			throw new SocketTimeoutException("Read deadline exceeded");
+		}
+		socket.setSoTimeout((int) remaining);
+	}
+
+	@Override
+	public int read() throws IOException {
+		updateTimeout();
+		return super.read();
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		updateTimeout();
+		return super.read(b, off, len);
+	}
+}
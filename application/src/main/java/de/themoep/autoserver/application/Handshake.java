@@ -0,0 +1,40 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+
+public record Handshake(int protocolVersion, String address, int port, int nextState) {
+
+	public static Handshake read(byte[] packet) throws IOException {
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(packet));
+		int packetId = MinecraftProtocol.readVarInt(input);
+		if (packetId != MinecraftProtocol.HANDSHAKE_PACKET) {
+			throw new IOException("Expected handshake but received packet " + packetId);
+		}
+		return new Handshake(
+				MinecraftProtocol.readVarInt(input),
+				MinecraftProtocol.readString(input, 255),
+				input.readUnsignedShort(),
+				MinecraftProtocol.readVarInt(input)
+		);
+	}
+}
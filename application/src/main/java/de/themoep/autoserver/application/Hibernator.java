@@ -0,0 +1,149 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Suspends the server process so that it doesn't use any CPU while idle and resumes it again much faster than a full start.
+ * Only works on Linux.
+ */
+public class Hibernator {
+
+	public enum Method {
+		/**
+		 * Stop the process and all its children with SIGSTOP and continue them with SIGCONT
+		 */
+		SIGNAL,
+		/**
+		 * Move the processes into a cgroup v2 and use its freezer, experimental
+		 */
+		CGROUP
+	}
+
+	private final Method method;
+	private final Path cgroup;
+	private final boolean reclaim;
+
+	/**
+	 * @param cgroup  The cgroup directory the server gets moved into, only used with {@link Method#CGROUP}
+	 * @param reclaim Whether to push the memory of the frozen server to swap, only works with {@link Method#CGROUP}
+	 */
+	public Hibernator(Method method, File cgroup, boolean reclaim) {
+		this.method = method;
+		this.cgroup = cgroup != null ? cgroup.toPath() : null;
+		this.reclaim = reclaim;
+	}
+
+	/**
+	 * Create the hibernator from the autoserver.properties
+	 * @return The hibernator or <code>null</code> if hibernation isn't enabled or supported
+	 * @throws IllegalArgumentException If the settings are invalid
+	 */
+	public static Hibernator fromSettings(Properties settings) {
+		String methodName = settings.getProperty("hibernate", "").trim();
+		if (methodName.isEmpty() || methodName.equalsIgnoreCase("false")) {
+			return null;
+		}
+		if (!System.getProperty("os.name", "").toLowerCase(Locale.ROOT).contains("linux")) {
+			throw new IllegalArgumentException("Hibernation is only supported on Linux");
+		}
+		Method method;
+		try {
+			method = Method.valueOf(methodName.toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown hibernate method " + methodName + ", use signal or cgroup");
+		}
+		String cgroup = settings.getProperty("hibernate-cgroup", "").trim();
+		if (method == Method.CGROUP && cgroup.isEmpty()) {
+			throw new IllegalArgumentException("No hibernate-cgroup set for the cgroup hibernate method");
+		}
+		if (method == Method.CGROUP) {
+			// The cgroup method is experimental, fail early instead of on the first freeze if the freezer can't be used
+			for (String file : new String[]{"cgroup.procs", "cgroup.freeze"}) {
+				if (!Files.isWritable(Path.of(cgroup, file))) {
+					throw new IllegalArgumentException("Can't write to " + file + " of cgroup " + cgroup
+							+ ", make sure it is a cgroup v2 which the application has access to or use the signal hibernate method");
+				}
+			}
+		}
+		return new Hibernator(method, cgroup.isEmpty() ? null : new File(cgroup),
+				Boolean.parseBoolean(settings.getProperty("hibernate-reclaim", "false")));
+	}
+
+	public void freeze(Process process) throws IOException, InterruptedException {
+		List<ProcessHandle> processes = getProcesses(process);
+		if (method == Method.SIGNAL) {
+			signal("STOP", processes);
+			return;
+		}
+
+		// Move the processes right before freezing so that children which got started later are included
+		for (ProcessHandle handle : processes) {
+			Files.writeString(cgroup.resolve("cgroup.procs"), String.valueOf(handle.pid()));
+		}
+		Files.writeString(cgroup.resolve("cgroup.freeze"), "1");
+		if (reclaim) {
+			try {
+				Files.writeString(cgroup.resolve("memory.reclaim"), Files.readString(cgroup.resolve("memory.current")).trim());
+			} catch (IOException e) {
+				// The kernel couldn't reclaim everything that was requested, whatever it got is still swapped out
+			}
+		}
+	}
+
+	public void thaw(Process process) throws IOException, InterruptedException {
+		if (method == Method.SIGNAL) {
+			signal("CONT", getProcesses(process));
+		} else {
+			Files.writeString(cgroup.resolve("cgroup.freeze"), "0");
+		}
+	}
+
+	private List<ProcessHandle> getProcesses(Process process) {
+		List<ProcessHandle> processes = new ArrayList<>();
+		processes.add(process.toHandle());
+		process.descendants().forEach(processes::add);
+		return processes;
+	}
+
+	private void signal(String signal, List<ProcessHandle> processes) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add("kill");
+		command.add("-" + signal);
+		for (ProcessHandle handle : processes) {
+			command.add(String.valueOf(handle.pid()));
+		}
+		int exitCode = new ProcessBuilder(command).inheritIO().start().onExit().join().exitValue();
+		if (exitCode != 0) {
+			throw new IOException("kill -" + signal + " exited with code " + exitCode);
+		}
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+}
@@ -18,31 +18,181 @@ package de.themoep.autoserver.application;
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Properties;
 
 public class Main {
-	public static void main(String[] args) throws IOException {
+	public static void main(String[] args) throws IOException, InterruptedException {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		boolean notifyReady = arguments.remove("--notify-ready");
+		boolean supervise = arguments.remove("--supervise");
+		boolean multi = arguments.remove("--multi");
+
 		System.out.println("AutoServer is starting...");
 
 		System.out.println("License: AGPL-3.0 (https://phoenix616.dev/licenses/agpl-v3.txt)");
 		System.out.println("Source: https://github.com/Phoenix616/AutoServer");
 
-		Properties properties = new Properties();
-		properties.load(new FileReader("server.properties"));
+		if (multi) {
+			runMulti(arguments);
+			return;
+		}
+
+		Properties properties = loadProperties(new File("server.properties"), true);
+
+		// Optional settings of the application itself
+		Properties settings = loadProperties(new File("autoserver.properties"), false);
+		boolean wakeOnLogin = Boolean.parseBoolean(settings.getProperty("wake-on-login", "false"));
 
 		String address;
 		int port;
-		if (args.length > 1) {
-			address = args[0];
-			port = Integer.parseInt(args[1]);
+		if (arguments.size() > 1) {
+			address = arguments.get(0);
+			port = Integer.parseInt(arguments.get(1));
 		} else {
-			address = properties.getProperty("server-ip");
+			address = properties.getProperty("server-ip", "");
 			port = Integer.parseInt(properties.getProperty("server-port"));
 		}
 
+		if (notifyReady) {
+			// Companion mode which runs next to the starting server and tells the plugin when it's ready
+			String readyUrl = settings.getProperty("ready-url", "");
+			if (readyUrl.isEmpty()) {
+				System.out.println("No ready-url set in autoserver.properties!");
+				System.exit(1);
+			}
+			ReadyNotifier notifier = new ReadyNotifier(address, port, readyUrl, settings.getProperty("ready-token", ""));
+			boolean success = notifier.waitAndNotify(Long.parseLong(settings.getProperty("ready-timeout", "600")) * 1000);
+			System.exit(success ? 0 : 1);
+		}
+
+		if (supervise) {
+			// Stay resident and run the server as a child process instead of exiting for a start script
+			Supervisor supervisor = createSupervisor(null, null, properties, settings, address, port);
+			if (supervisor == null) {
+				System.exit(1);
+			}
+			supervisor.run();
+			return;
+		}
+
 		// Start new web server on that address and port
-		WebServer webServer = new WebServer(address, port);
+		WebServer webServer = new WebServer(address, port, createStatusResponse(properties), wakeOnLogin);
+	}
+
+	/**
+	 * Supervise the servers in all the given directories from this one process. Every directory needs its
+	 * own server.properties and an autoserver.properties with the server-command.
+	 */
+	private static void runMulti(List<String> directories) throws IOException, InterruptedException {
+		if (directories.isEmpty()) {
+			System.out.println("Usage: --multi <server directory>...");
+			System.exit(1);
+		}
+
+		List<Thread> threads = new ArrayList<>();
+		for (String path : directories) {
+			File directory = new File(path);
+			String name = directory.getName();
+			Supervisor supervisor;
+			// A broken server directory shouldn't keep all the other servers from being supervised
+			try {
+				Properties properties = loadProperties(new File(directory, "server.properties"), true);
+				Properties settings = loadProperties(new File(directory, "autoserver.properties"), false);
+				supervisor = createSupervisor(name, directory, properties, settings,
+						properties.getProperty("server-ip", ""), Integer.parseInt(properties.getProperty("server-port")));
+			} catch (IOException e) {
+				System.out.println("[" + name + "] Unable to load the properties, skipping the server: " + e.getMessage());
+				continue;
+			} catch (NumberFormatException e) {
+				System.out.println("[" + name + "] Invalid number in the properties, skipping the server: " + e.getMessage());
+				continue;
+			}
+			if (supervisor == null) {
+				continue;
+			}
+			// Listeners and supervisors all run on virtual threads so sleeping servers don't hold any platform threads
+			threads.add(Thread.ofVirtual().name(name).start(() -> {
+				try {
+					supervisor.run();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}));
+		}
+
+		if (threads.isEmpty()) {
+			System.out.println("No server to supervise!");
+			System.exit(1);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * @param name      The name to prefix log messages with or <code>null</code> when only supervising one server
+	 * @param directory The directory of the server or <code>null</code> to run it in the current one and share the console
+	 * @return The supervisor or <code>null</code> if no server-command is set or the settings are invalid
+	 */
+	private static Supervisor createSupervisor(String name, File directory, Properties properties, Properties settings, String address, int port) {
+		String serverCommand = settings.getProperty("server-command", "").trim();
+		if (serverCommand.isEmpty()) {
+			System.out.println((name != null ? "[" + name + "] " : "") + "No server-command set in autoserver.properties!");
+			return null;
+		}
+		ProcessBuilder processBuilder = new ProcessBuilder(Arrays.asList(serverCommand.split("\\s+")));
+		if (directory != null) {
+			// Several servers can't share one console so each one logs into its own directory
+			processBuilder.directory(directory)
+					.redirectErrorStream(true)
+					.redirectOutput(Redirect.appendTo(new File(directory, "console.log")));
+		} else {
+			processBuilder.inheritIO();
+		}
+
+		Hibernator hibernator;
+		int wakePort = Integer.parseInt(settings.getProperty("hibernate-port", "-1"));
+		try {
+			hibernator = Hibernator.fromSettings(settings);
+			if (hibernator != null && wakePort < 0) {
+				throw new IllegalArgumentException("No hibernate-port set to listen for start requests on while the server is suspended");
+			}
+		} catch (IllegalArgumentException e) {
+			System.out.println((name != null ? "[" + name + "] " : "") + e.getMessage());
+			return null;
+		}
+
+		String readyUrl = settings.getProperty("ready-url", "");
+		ReadyNotifier notifier = readyUrl.isEmpty() ? null : new ReadyNotifier(address, port, readyUrl, settings.getProperty("ready-token", ""));
+		return new Supervisor(name, address, port, createStatusResponse(properties),
+				Boolean.parseBoolean(settings.getProperty("wake-on-login", "false")), processBuilder,
+				notifier, Long.parseLong(settings.getProperty("ready-timeout", "600")) * 1000,
+				hibernator, Long.parseLong(settings.getProperty("hibernate-after", "300")) * 1000, wakePort);
+	}
+
+	/**
+	 * Build the response to server list pings once as it never changes
+	 */
+	private static StatusResponse createStatusResponse(Properties properties) {
+		return new StatusResponse(
+				properties.getProperty("motd", "A Minecraft Server"),
+				Integer.parseInt(properties.getProperty("max-players", "20")));
+	}
+
+	private static Properties loadProperties(File file, boolean required) throws IOException {
+		Properties properties = new Properties();
+		if (required || file.exists()) {
+			try (FileReader reader = new FileReader(file)) {
+				properties.load(reader);
+			}
+		}
+		return properties;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,133 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+public final class MinecraftProtocol {
+	public static final int HANDSHAKE_PACKET = 0x00;
+	public static final int STATUS_REQUEST_PACKET = 0x00;
+	public static final int STATUS_RESPONSE_PACKET = 0x00;
+	public static final int PING_PACKET = 0x01;
+	public static final int LOGIN_DISCONNECT_PACKET = 0x00;
+
+	public static final int STATE_STATUS = 1;
+	public static final int STATE_LOGIN = 2;
+	public static final int STATE_TRANSFER = 3;
+
+	private MinecraftProtocol() {}
+
+	public static int readVarInt(InputStream input) throws IOException {
+		int value = 0;
+		for (int i = 0; i < 5; i++) {
+			int b = input.read();
+			if (b == -1) {
+				throw new EOFException();
+			}
+			value |= (b & 0x7F) << (i * 7);
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("VarInt is too big");
+	}
+
+	public static void writeVarInt(ByteArrayOutputStream output, int value) {
+		while ((value & ~0x7F) != 0) {
+			output.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		output.write(value);
+	}
+
+	public static String readString(InputStream input, int maxLength) throws IOException {
+		int length = readVarInt(input);
+		if (length < 0 || length > maxLength * 4) {
+			throw new IOException("String length " + length + " is out of bounds");
+		}
+		byte[] bytes = new byte[length];
+		new DataInputStream(input).readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	public static void writeString(ByteArrayOutputStream output, String string) {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(output, bytes.length);
+		output.writeBytes(bytes);
+	}
+
+	/**
+	 * Read a full length-prefixed packet
+	 * @param input The stream to read from
+	 * @param maxLength The maximum length of the packet, longer packets are rejected without reading them
+	 * @return The packet's id and data
+	 * @throws IOException If the packet is too long or the stream ended before it was read
+	 */
+	public static byte[] readPacket(InputStream input, int maxLength) throws IOException {
+		int length = readVarInt(input);
+		if (length < 1 || length > maxLength) {
+			throw new IOException("Packet length " + length + " is out of bounds");
+		}
+		byte[] packet = new byte[length];
+		new DataInputStream(input).readFully(packet);
+		return packet;
+	}
+
+	/**
+	 * Encode a packet with its length prefix
+	 * @param id The id of the packet
+	 * @param data The data of the packet
+	 * @return The bytes to send
+	 */
+	public static byte[] encodePacket(int id, byte[] data) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(data.length + 5);
+		writeVarInt(body, id);
+		body.writeBytes(data);
+		ByteArrayOutputStream packet = new ByteArrayOutputStream(body.size() + 5);
+		writeVarInt(packet, body.size());
+		packet.writeBytes(body.toByteArray());
+		return packet.toByteArray();
+	}
+
+	public static String escapeJson(String string) {
+		StringBuilder sb = new StringBuilder(string.length() + 16);
+		for (char c : string.toCharArray()) {
+			switch (c) {
+				case '"' -> sb.append("\\\"");
+				case '\\' -> sb.append("\\\\");
+				case '\n' -> sb.append("\\n");
+				case '\r' -> sb.append("\\r");
+				case '\t' -> sb.append("\\t");
+				default -> {
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+				}
+			}
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,88 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Waits until the local Minecraft server answers status pings and then notifies the AutoServer plugin
+ */
+public class ReadyNotifier {
+	private final ServerPinger pinger;
+	private final String readyUrl;
+	private final String readyToken;
+
+	public ReadyNotifier(String address, int port, String readyUrl, String readyToken) {
+		this.pinger = new ServerPinger(address, port);
+		this.readyUrl = readyUrl;
+		this.readyToken = readyToken;
+	}
+
+	/**
+	 * Wait for the server to be ready and notify the plugin
+	 * @param maxWait The maximum time to wait for the server in milliseconds
+	 * @return Whether the server got ready and the notification was sent successfully
+	 */
+	public boolean waitAndNotify(long maxWait) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + maxWait;
+		while (!isReady()) {
+			if (System.currentTimeMillis() > deadline) {
+				System.out.println("Server did not get ready within " + maxWait / 1000 + " seconds");
+				return false;
+			}
+			Thread.sleep(1000);
+		}
+		return notifyReady();
+	}
+
+	/**
+	 * Check whether the real server answers a status ping
+	 * @return Whether the server is ready
+	 */
+	public boolean isReady() {
+		return pinger.isReady();
+	}
+
+	private boolean notifyReady() {
+		try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build()) {
+			HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(readyUrl))
+					.timeout(Duration.ofSeconds(10))
+					.POST(HttpRequest.BodyPublishers.noBody());
+			if (readyToken != null && !readyToken.isEmpty()) {
+				request.header("Authorization", "Bearer " + readyToken);
+			}
+			HttpResponse<Void> response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+			if (response.statusCode() == 200) {
+				System.out.println("Notified " + readyUrl + " that the server is ready");
+				return true;
+			}
+			System.out.println("Failed to notify " + readyUrl + " (HTTP " + response.statusCode() + ")");
+		} catch (IOException | IllegalArgumentException e) {
+			System.out.println("Failed to notify " + readyUrl + ": " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return false;
+	}
+}
@@ -0,0 +1,103 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends status pings to the local Minecraft server
+ */
+public class ServerPinger {
+	private static final Pattern PROTOCOL_PATTERN = Pattern.compile("\"protocol\"\\s*:\\s*(-?\\d{1,9})");
+	private static final Pattern ONLINE_PATTERN = Pattern.compile("\"online\"\\s*:\\s*(\\d{1,9})");
+	private static final int PING_TIMEOUT = 1000;
+
+	private final String address;
+	private final int port;
+
+	public ServerPinger(String address, int port) {
+		this.address = address.isEmpty() ? "127.0.0.1" : address;
+		this.port = port;
+	}
+
+	/**
+	 * Check whether the real server answers a status ping. A sleeping AutoServer application answers with a negative protocol.
+	 * @return Whether the server is ready
+	 */
+	public boolean isReady() {
+		String status = ping();
+		if (status == null) {
+			return false;
+		}
+		Matcher matcher = PROTOCOL_PATTERN.matcher(status);
+		return matcher.find() && Integer.parseInt(matcher.group(1)) >= 0;
+	}
+
+	/**
+	 * Get the amount of players which are online on the server
+	 * @return The amount of players or -1 if the server isn't ready
+	 */
+	public int getOnlinePlayers() {
+		String status = ping();
+		if (status == null) {
+			return -1;
+		}
+		Matcher protocol = PROTOCOL_PATTERN.matcher(status);
+		Matcher online = ONLINE_PATTERN.matcher(status);
+		if (!protocol.find() || Integer.parseInt(protocol.group(1)) < 0 || !online.find()) {
+			return -1;
+		}
+		return Integer.parseInt(online.group(1));
+	}
+
+	/**
+	 * Request the status of the server
+	 * @return The status JSON or <code>null</code> if the server didn't answer
+	 */
+	private String ping() {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(address, port), PING_TIMEOUT);
+			socket.setSoTimeout(PING_TIMEOUT);
+			OutputStream output = socket.getOutputStream();
+			ByteArrayOutputStream handshake = new ByteArrayOutputStream();
+			MinecraftProtocol.writeVarInt(handshake, -1);
+			MinecraftProtocol.writeString(handshake, address);
+			handshake.write((port >> 8) & 0xFF);
+			handshake.write(port & 0xFF);
+			MinecraftProtocol.writeVarInt(handshake, MinecraftProtocol.STATE_STATUS);
+			output.write(MinecraftProtocol.encodePacket(MinecraftProtocol.HANDSHAKE_PACKET, handshake.toByteArray()));
+			output.write(MinecraftProtocol.encodePacket(MinecraftProtocol.STATUS_REQUEST_PACKET, new byte[0]));
+			output.flush();
+
+			InputStream input = socket.getInputStream();
+			byte[] response = MinecraftProtocol.readPacket(input, 1024 * 1024);
+			return new String(response, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
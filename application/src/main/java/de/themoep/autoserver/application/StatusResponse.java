@@ -0,0 +1,49 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.ByteArrayOutputStream;
+
+public class StatusResponse {
+	private final byte[] packet;
+	private final byte[] loginDisconnectPacket;
+
+	public StatusResponse(String motd, int maxPlayers) {
+		// A negative protocol version lets clients and the AutoServer plugin know that this isn't the real server
+		String json = "{\"version\":{\"name\":\"Sleeping\",\"protocol\":-1},"
+				+ "\"players\":{\"max\":" + maxPlayers + ",\"online\":0},"
+				+ "\"description\":{\"text\":\"" + MinecraftProtocol.escapeJson(motd) + "\\n\","
+				+ "\"extra\":[{\"text\":\"Sleeping, join to wake it up!\",\"color\":\"gray\"}]}}";
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		MinecraftProtocol.writeString(data, json);
+		packet = MinecraftProtocol.encodePacket(MinecraftProtocol.STATUS_RESPONSE_PACKET, data.toByteArray());
+
+		ByteArrayOutputStream reason = new ByteArrayOutputStream();
+		MinecraftProtocol.writeString(reason, "{\"text\":\"Server is starting, please reconnect in a moment!\",\"color\":\"aqua\"}");
+		loginDisconnectPacket = MinecraftProtocol.encodePacket(MinecraftProtocol.LOGIN_DISCONNECT_PACKET, reason.toByteArray());
+	}
+
+	public byte[] getPacket() {
+		return packet;
+	}
+
+	public byte[] getLoginDisconnectPacket() {
+		return loginDisconnectPacket;
+	}
+}
@@ -0,0 +1,283 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Stays resident while the server is stopped and runs the server as a child process whenever it gets woken.
+ * The sleeping listener gets bound again as soon as the server process exited.
+ */
+public class Supervisor {
+	private static final long RETRY_DELAY = 5000;
+	private static final long IDLE_CHECK_INTERVAL = 10000;
+
+	private final String name;
+	private final String address;
+	private final int port;
+	private final StatusResponse statusResponse;
+	private final boolean wakeOnLogin;
+	private final ProcessBuilder processBuilder;
+	private final ReadyNotifier readyNotifier;
+	private final long readyTimeout;
+	private final Hibernator hibernator;
+	private final long hibernateAfter;
+	private final int wakePort;
+	private final ServerPinger pinger;
+	// Guards freezing and thawing so that a wake request can't race with the idle check
+	private final ReentrantLock hibernateLock = new ReentrantLock();
+	private volatile Process process;
+	private volatile Thread notifier;
+	private volatile boolean frozen = false;
+	private volatile long lastWake = 0;
+	private volatile boolean stopping = false;
+
+	/**
+	 * @param name           The name of the server to prefix log messages with or <code>null</code> for no prefix
+	 * @param processBuilder Starts the server process
+	 * @param readyNotifier  Notifies the plugin when the server is ready or <code>null</code> to not send notifications
+	 * @param readyTimeout   How long to wait for the server to get ready, in milliseconds
+	 * @param hibernator     Suspends the idle server instead of letting it stop or <code>null</code> to not hibernate it
+	 * @param hibernateAfter How long the server needs to be empty before it gets suspended, in milliseconds
+	 * @param wakePort       The port to listen for start requests on while the suspended server still holds its own port
+	 */
+	public Supervisor(String name, String address, int port, StatusResponse statusResponse, boolean wakeOnLogin, ProcessBuilder processBuilder, ReadyNotifier readyNotifier, long readyTimeout,
+			Hibernator hibernator, long hibernateAfter, int wakePort) {
+		this.name = name;
+		this.address = address;
+		this.port = port;
+		this.statusResponse = statusResponse;
+		this.wakeOnLogin = wakeOnLogin;
+		this.processBuilder = processBuilder;
+		this.readyNotifier = readyNotifier;
+		this.readyTimeout = readyTimeout;
+		this.hibernator = hibernator;
+		this.hibernateAfter = hibernateAfter;
+		this.wakePort = wakePort;
+		this.pinger = new ServerPinger(address, port);
+	}
+
+	public void run() throws InterruptedException {
+		Runtime.getRuntime().addShutdownHook(new Thread(this::stop));
+		if (hibernator != null) {
+			Thread.ofVirtual().name(getThreadName("wake-listener")).start(this::listenForWake);
+		}
+		while (!stopping) {
+			WebServer webServer = new WebServer(name, address, port, statusResponse, wakeOnLogin, () -> {});
+			if (stopping) {
+				return;
+			}
+			if (!webServer.isWoken()) {
+				log("Unable to listen on port " + port + ", retrying in " + RETRY_DELAY / 1000 + " seconds...");
+				Thread.sleep(RETRY_DELAY);
+				continue;
+			}
+			runServer();
+		}
+	}
+
+	private void runServer() throws InterruptedException {
+		log("Starting server: " + String.join(" ", processBuilder.command()));
+		Process process;
+		try {
+			process = processBuilder.start();
+		} catch (IOException e) {
+			log("Unable to start server: " + e.getMessage());
+			Thread.sleep(RETRY_DELAY);
+			return;
+		}
+		this.process = process;
+		startReadyNotifier();
+
+		Thread idleMonitor = null;
+		if (hibernator != null) {
+			idleMonitor = Thread.ofVirtual().name(getThreadName("idle-monitor")).start(() -> monitorIdle(process));
+		}
+
+		// Waiting on the exit future doesn't block the carrier when running on a virtual thread
+		int exitCode = process.onExit().join().exitValue();
+		frozen = false;
+		Thread notifier = this.notifier;
+		if (notifier != null) {
+			notifier.interrupt();
+		}
+		if (idleMonitor != null) {
+			idleMonitor.interrupt();
+		}
+		log("Server stopped with exit code " + exitCode + ", waiting for the next start request...");
+	}
+
+	private void startReadyNotifier() {
+		if (readyNotifier != null) {
+			notifier = Thread.ofVirtual().name(getThreadName("ready-notifier")).start(() -> {
+				try {
+					readyNotifier.waitAndNotify(readyTimeout);
+				} catch (InterruptedException e) {
+					// Server stopped before it got ready
+				}
+			});
+		}
+	}
+
+	/**
+	 * Suspend the server once nobody was online on it for long enough
+	 */
+	private void monitorIdle(Process process) {
+		long idleSince = -1;
+		try {
+			while (process.isAlive()) {
+				Thread.sleep(IDLE_CHECK_INTERVAL);
+				if (frozen || pinger.getOnlinePlayers() != 0) {
+					idleSince = -1;
+					continue;
+				}
+				long now = System.currentTimeMillis();
+				if (idleSince < 0) {
+					idleSince = now;
+				} else if (now - idleSince >= hibernateAfter) {
+					freeze(process, idleSince);
+					idleSince = -1;
+				}
+			}
+		} catch (InterruptedException e) {
+			// Server stopped
+		}
+	}
+
+	private void freeze(Process process, long idleSince) {
+		hibernateLock.lock();
+		try {
+			// Someone requested a start while the server was checked, it's about to get players
+			if (frozen || lastWake >= idleSince || !process.isAlive()) {
+				return;
+			}
+			hibernator.freeze(process);
+			frozen = true;
+			log("Server was empty for " + hibernateAfter / 1000 + " seconds, suspended it");
+		} catch (IOException e) {
+			log("Unable to suspend server: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			hibernateLock.unlock();
+		}
+	}
+
+	/**
+	 * Listen for start requests on the wake port for as long as the supervisor runs. The server's own port is held by
+	 * the suspended server so the plugin needs to send its start requests here.
+	 */
+	private void listenForWake() {
+		try {
+			while (!stopping) {
+				WebServer wakeServer = new WebServer(name, address, wakePort, statusResponse, false, () -> {});
+				if (stopping) {
+					return;
+				}
+				if (!wakeServer.isWoken()) {
+					log("Unable to listen on wake port " + wakePort + ", retrying in " + RETRY_DELAY / 1000 + " seconds...");
+					Thread.sleep(RETRY_DELAY);
+					continue;
+				}
+				wake();
+			}
+		} catch (InterruptedException e) {
+			// Application is stopping
+		}
+	}
+
+	private void wake() {
+		hibernateLock.lock();
+		try {
+			lastWake = System.currentTimeMillis();
+			Process process = this.process;
+			if (process == null || !process.isAlive()) {
+				// Server isn't running at all, hand the request to the listener on the server's port to boot it normally
+				forwardStartRequest();
+			} else if (frozen) {
+				long start = System.nanoTime();
+				hibernator.thaw(process);
+				frozen = false;
+				log("Resumed server in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + "ms");
+				startReadyNotifier();
+			}
+		} catch (IOException e) {
+			log("Unable to wake server: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			hibernateLock.unlock();
+		}
+	}
+
+	private void forwardStartRequest() throws IOException {
+		try (Socket socket = new Socket()) {
+			socket.connect(new InetSocketAddress(address.isEmpty() ? "127.0.0.1" : address, port), 1000);
+			socket.setSoTimeout(5000);
+			OutputStream output = socket.getOutputStream();
+			output.write("GET /start HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+			output.flush();
+			// Wait for the answer so that the listener isn't reset before it read the request
+			InputStream input = socket.getInputStream();
+			input.read();
+		}
+	}
+
+	private void stop() {
+		stopping = true;
+		Process process = this.process;
+		if (process != null && process.isAlive()) {
+			log("Stopping server...");
+			if (frozen) {
+				// A suspended server can't handle the stop signal
+				try {
+					hibernator.thaw(process);
+				} catch (IOException | InterruptedException e) {
+					log("Unable to resume server: " + e.getMessage());
+				}
+			}
+			process.destroy();
+			try {
+				if (!process.waitFor(60, TimeUnit.SECONDS)) {
+					process.destroyForcibly();
+				}
+			} catch (InterruptedException e) {
+				process.destroyForcibly();
+			}
+		}
+	}
+
+	/**
+	 * Prefix thread names with the server name so the threads of different servers can be told apart in thread dumps
+	 */
+	private String getThreadName(String type) {
+		return name != null ? name + "-" + type : type;
+	}
+
+	private void log(String message) {
+		System.out.println(name != null ? "[" + name + "] " + message : message);
+	}
+}
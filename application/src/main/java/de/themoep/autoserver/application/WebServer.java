@@ -18,25 +18,66 @@ package de.themoep.autoserver.application;
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WebServer {
+	// Maximum length of the request line or a single packet, everything longer is rejected
+	private static final int MAX_REQUEST_LENGTH = 1024;
+	private static final int MAX_HEADERS = 64;
+	// Time a client has to send its full request, in milliseconds
+	private static final int READ_DEADLINE = 5000;
+	// Maximum amount of connections that are handled at the same time
+	private static final int MAX_CONNECTIONS = 64;
+
+	// Shared by all listeners of the process
+	private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+	private final Semaphore connections = new Semaphore(MAX_CONNECTIONS);
+	private final AtomicBoolean shutdown = new AtomicBoolean(false);
+	private final StatusResponse statusResponse;
+	private final boolean wakeOnLogin;
+	private final String name;
+	private final Runnable onWake;
 	private ServerSocket serverSocket;
 
-	public WebServer(String address, int port) {
+	public WebServer(String address, int port, StatusResponse statusResponse, boolean wakeOnLogin) {
+		this(null, address, port, statusResponse, wakeOnLogin, () -> {
+			System.out.println("Shutting down...");
+			System.exit(0); // Shutdown the program
+		});
+	}
+
+	/**
+	 * Listen for requests until the server should get started. Blocks until the listener is closed.
+	 * @param name   The name of the server to prefix log messages with or <code>null</code> for no prefix
+	 * @param onWake Called after the listener was closed because a start was requested
+	 */
+	public WebServer(String name, String address, int port, StatusResponse statusResponse, boolean wakeOnLogin, Runnable onWake) {
+		this.name = name;
+		this.statusResponse = statusResponse;
+		this.wakeOnLogin = wakeOnLogin;
+		this.onWake = onWake;
 		try {
 			if (address.isEmpty()) {
 				serverSocket = new ServerSocket(port); // Listen on all interfaces
 			} else {
 				serverSocket = new ServerSocket(port, 50, InetAddress.getByName(address));
 			}
-			System.out.println("Server started on " + (address.isEmpty() ? "0.0.0.0" : address) + ":" + port);
+			log("Server started on " + (address.isEmpty() ? "0.0.0.0" : address) + ":" + port);
 			handleRequests();
 		} catch (IOException e) {
 			e.printStackTrace();
@@ -44,35 +85,172 @@ public class WebServer {
 	}
 
 	private void handleRequests() {
-		while (true) {
+		log("Waiting for connections...");
+		while (!serverSocket.isClosed()) {
 			try {
-				System.out.println("Waiting for connections...");
 				Socket clientSocket = serverSocket.accept();
-				System.out.println("Connection from " + clientSocket.getInetAddress().getHostAddress());
-				BufferedReader input = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-				String request = input.readLine();
-				System.out.println("Received request: " + request);
-				OutputStream output = clientSocket.getOutputStream();
-				String response = "";
-				boolean shutdown = false;
-				if (request.startsWith("GET /start ")) {
-					response = "HTTP/1.1 200 OK\r\n\r\n";
-					shutdown = true;
-				} else {
-					response = "HTTP/1.1 404 Not Found\r\n\r\n";
-				}
-				output.write(response.getBytes());
-				output.flush();
-				clientSocket.close();
-				if (shutdown) {
-					serverSocket.close();
-					System.out.println("Shutting down...");
-					System.exit(0); // Shutdown the program
-					break;
+				if (!connections.tryAcquire()) {
+					log("Too many connections, rejecting " + clientSocket.getInetAddress().getHostAddress());
+					clientSocket.close();
+					continue;
 				}
+				EXECUTOR.execute(() -> {
+					try {
+						handleConnection(clientSocket);
+					} finally {
+						connections.release();
+					}
+				});
 			} catch (IOException e) {
-				e.printStackTrace();
+				if (!shutdown.get()) {
+					e.printStackTrace();
+				}
 			}
 		}
 	}
+
+	private void handleConnection(Socket clientSocket) {
+		try (clientSocket) {
+			log("Connection from " + clientSocket.getInetAddress().getHostAddress());
+			PushbackInputStream input = new PushbackInputStream(
+					new DeadlineInputStream(clientSocket, System.currentTimeMillis() + READ_DEADLINE), 2);
+			OutputStream output = clientSocket.getOutputStream();
+			int first = input.read();
+			int second = input.read();
+			if (first == -1 || second == -1) {
+				return;
+			}
+			input.unread(second);
+			input.unread(first);
+			if (first == 'G' && second == 'E') {
+				handleHttp(input, output);
+			} else if (first == 0xFE) {
+				// Legacy server list ping from ancient clients, just close the connection
+				log("Received legacy ping");
+			} else {
+				handleMinecraft(clientSocket, input, output);
+			}
+		} catch (SocketTimeoutException e) {
+			log("Connection from " + clientSocket.getInetAddress().getHostAddress() + " timed out");
+		} catch (EOFException e) {
+			// Client closed the connection early
+		} catch (IOException e) {
+			log("Error while handling connection from " + clientSocket.getInetAddress().getHostAddress() + ": " + e.getMessage());
+		}
+	}
+
+	private void handleHttp(InputStream input, OutputStream output) throws IOException {
+		String request = readRequestLine(input);
+		log("Received request: " + request);
+		String status;
+		boolean shutdown = false;
+		if (request == null || !skipHeaders(input)) {
+			status = "400 Bad Request";
+		} else if (request.startsWith("GET /start ")) {
+			status = "200 OK";
+			shutdown = true;
+		} else {
+			status = "404 Not Found";
+		}
+		// Unread request data would make closing the socket reset the connection and drop the response
+		output.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+		output.flush();
+		if (shutdown) {
+			shutdown();
+		}
+	}
+
+	private void handleMinecraft(Socket clientSocket, InputStream input, OutputStream output) throws IOException {
+		Handshake handshake = Handshake.read(MinecraftProtocol.readPacket(input, MAX_REQUEST_LENGTH));
+		if (handshake.nextState() == MinecraftProtocol.STATE_LOGIN || handshake.nextState() == MinecraftProtocol.STATE_TRANSFER) {
+			if (wakeOnLogin) {
+				log("Received login attempt for " + handshake.address() + ":" + handshake.port());
+				// Like with HTTP the unread Login Start packet would make closing the socket reset the connection
+				try {
+					MinecraftProtocol.readPacket(input, MAX_REQUEST_LENGTH);
+				} catch (IOException e) {
+					// The login attempt still counts even if the client didn't send a proper Login Start
+				}
+				output.write(statusResponse.getLoginDisconnectPacket());
+				output.flush();
+				clientSocket.shutdownOutput();
+				shutdown();
+			} else {
+				log("Received login attempt but wake-on-login is disabled, closing connection");
+			}
+			return;
+		} else if (handshake.nextState() != MinecraftProtocol.STATE_STATUS) {
+			log("Received handshake with unknown next state " + handshake.nextState() + ", closing connection");
+			return;
+		}
+
+		byte[] request = MinecraftProtocol.readPacket(input, MAX_REQUEST_LENGTH);
+		if (request[0] != MinecraftProtocol.STATUS_REQUEST_PACKET) {
+			return;
+		}
+		output.write(statusResponse.getPacket());
+		output.flush();
+
+		// Answer the optional ping request by sending back its payload
+		byte[] ping = MinecraftProtocol.readPacket(input, MAX_REQUEST_LENGTH);
+		if (ping[0] == MinecraftProtocol.PING_PACKET && ping.length == 9) {
+			output.write(MinecraftProtocol.encodePacket(MinecraftProtocol.PING_PACKET, Arrays.copyOfRange(ping, 1, ping.length)));
+			output.flush();
+		}
+	}
+
+	/**
+	 * Read the first line of a request
+	 * @param input The stream to read from
+	 * @return The line or <code>null</code> if it was too long or the connection was closed before
+	 */
+	private String readRequestLine(InputStream input) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		while (line.size() < MAX_REQUEST_LENGTH) {
+			int b = input.read();
+			if (b == -1) {
+				return null;
+			} else if (b == '\n') {
+				return line.toString(StandardCharsets.US_ASCII).stripTrailing();
+			}
+			line.write(b);
+		}
+		return null;
+	}
+
+	/**
+	 * Read the remaining header lines of a request
+	 * @param input The stream to read from
+	 * @return Whether the end of the headers was reached
+	 */
+	private boolean skipHeaders(InputStream input) throws IOException {
+		for (int i = 0; i < MAX_HEADERS; i++) {
+			String line = readRequestLine(input);
+			if (line == null) {
+				return false;
+			} else if (line.isEmpty()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void shutdown() throws IOException {
+		if (shutdown.compareAndSet(false, true)) {
+			serverSocket.close();
+			onWake.run();
+		}
+	}
+
+	private void log(String message) {
+		System.out.println(name != null ? "[" + name + "] " + message : message);
+	}
+
+	/**
+	 * Check whether the listener was closed because a start was requested
+	 * @return Whether the server got woken, <code>false</code> if the listener stopped for another reason
+	 */
+	public boolean isWoken() {
+		return shutdown.get();
+	}
 }
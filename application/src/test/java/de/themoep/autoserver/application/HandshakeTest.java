@@ -0,0 +1,78 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class HandshakeTest {
+
+	@Test
+	public void readsHandshakes() throws IOException {
+		Handshake handshake = Handshake.read(createHandshake(767, "mc.example.com", 25565, MinecraftProtocol.STATE_LOGIN));
+		assertEquals(new Handshake(767, "mc.example.com", 25565, MinecraftProtocol.STATE_LOGIN), handshake);
+	}
+
+	@Test
+	public void readsHighPorts() throws IOException {
+		assertEquals(65535, Handshake.read(createHandshake(767, "localhost", 65535, MinecraftProtocol.STATE_STATUS)).port());
+	}
+
+	@Test
+	public void rejectsOtherPackets() {
+		byte[] packet = createHandshake(767, "localhost", 25565, MinecraftProtocol.STATE_STATUS);
+		packet[0] = MinecraftProtocol.PING_PACKET;
+		assertThrows(IOException.class, () -> Handshake.read(packet));
+	}
+
+	@Test
+	public void rejectsOversizedAddresses() {
+		assertThrows(IOException.class, () -> Handshake.read(createHandshake(767, "a".repeat(1021), 25565, MinecraftProtocol.STATE_STATUS)));
+	}
+
+	@Test
+	public void rejectsTruncatedHandshakes() {
+		byte[] packet = createHandshake(767, "mc.example.com", 25565, MinecraftProtocol.STATE_LOGIN);
+		for (int length = 0; length < packet.length; length++) {
+			byte[] truncated = Arrays.copyOf(packet, length);
+			assertThrows(EOFException.class, () -> Handshake.read(truncated), "Handshake truncated to " + length + " bytes");
+		}
+	}
+
+	/**
+	 * Create the id and data of a handshake packet like the client sends it
+	 */
+	private static byte[] createHandshake(int protocolVersion, String address, int port, int nextState) {
+		ByteArrayOutputStream packet = new ByteArrayOutputStream();
+		MinecraftProtocol.writeVarInt(packet, MinecraftProtocol.HANDSHAKE_PACKET);
+		MinecraftProtocol.writeVarInt(packet, protocolVersion);
+		MinecraftProtocol.writeString(packet, address);
+		packet.write(port >> 8);
+		packet.write(port & 0xFF);
+		MinecraftProtocol.writeVarInt(packet, nextState);
+		return packet.toByteArray();
+	}
+}
@@ -0,0 +1,133 @@
+package de.themoep.autoserver.application;
+
+/*
+ * AutoServer - application
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MinecraftProtocolTest {
+
+	@Test
+	public void readsVarInts() throws IOException {
+		assertEquals(0, readVarInt(0x00));
+		assertEquals(127, readVarInt(0x7F));
+		assertEquals(128, readVarInt(0x80, 0x01));
+		assertEquals(300, readVarInt(0xAC, 0x02));
+		assertEquals(Integer.MAX_VALUE, readVarInt(0xFF, 0xFF, 0xFF, 0xFF, 0x07));
+		assertEquals(-1, readVarInt(0xFF, 0xFF, 0xFF, 0xFF, 0x0F));
+	}
+
+	@Test
+	public void writtenVarIntsCanBeRead() throws IOException {
+		for (int value : new int[]{0, 1, 127, 128, 255, 25565, 2097151, Integer.MAX_VALUE, -1, Integer.MIN_VALUE}) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			MinecraftProtocol.writeVarInt(output, value);
+			assertEquals(value, MinecraftProtocol.readVarInt(new ByteArrayInputStream(output.toByteArray())));
+		}
+	}
+
+	@Test
+	public void rejectsOversizedVarInts() {
+		assertThrows(IOException.class, () -> readVarInt(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01));
+	}
+
+	@Test
+	public void rejectsTruncatedVarInts() {
+		assertThrows(EOFException.class, () -> readVarInt());
+		assertThrows(EOFException.class, () -> readVarInt(0x80));
+		assertThrows(EOFException.class, () -> readVarInt(0xFF, 0xFF, 0xFF, 0xFF));
+	}
+
+	@Test
+	public void encodedPacketsCanBeRead() throws IOException {
+		byte[] encoded = MinecraftProtocol.encodePacket(MinecraftProtocol.PING_PACKET, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+		assertArrayEquals(new byte[]{9, 1, 1, 2, 3, 4, 5, 6, 7, 8}, encoded);
+		assertArrayEquals(new byte[]{1, 1, 2, 3, 4, 5, 6, 7, 8}, MinecraftProtocol.readPacket(new ByteArrayInputStream(encoded), 9));
+	}
+
+	@Test
+	public void readsConsecutivePackets() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.writeBytes(MinecraftProtocol.encodePacket(0x00, new byte[0]));
+		output.writeBytes(MinecraftProtocol.encodePacket(0x01, new byte[]{42}));
+		ByteArrayInputStream input = new ByteArrayInputStream(output.toByteArray());
+		assertArrayEquals(new byte[]{0x00}, MinecraftProtocol.readPacket(input, 16));
+		assertArrayEquals(new byte[]{0x01, 42}, MinecraftProtocol.readPacket(input, 16));
+	}
+
+	@Test
+	public void rejectsOversizedPacketsWithoutReadingThem() {
+		// A length of 1024 with only a few bytes following, reading them would fail with an EOF instead
+		ByteArrayInputStream input = new ByteArrayInputStream(new byte[]{(byte) 0x80, 0x08, 0x00, 0x01});
+		IOException e = assertThrows(IOException.class, () -> MinecraftProtocol.readPacket(input, 1023));
+		assertEquals(IOException.class, e.getClass());
+		assertEquals(2, input.available());
+	}
+
+	@Test
+	public void rejectsEmptyAndNegativeLengths() {
+		assertThrows(IOException.class, () -> MinecraftProtocol.readPacket(input(0x00), 16));
+		assertThrows(IOException.class, () -> MinecraftProtocol.readPacket(input(0xFF, 0xFF, 0xFF, 0xFF, 0x0F), 16));
+	}
+
+	@Test
+	public void rejectsTruncatedPackets() {
+		assertThrows(EOFException.class, () -> MinecraftProtocol.readPacket(input(0x05, 0x00, 0x01), 16));
+	}
+
+	@Test
+	public void writtenStringsCanBeRead() throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		MinecraftProtocol.writeString(output, "mc.example.com");
+		assertEquals("mc.example.com", MinecraftProtocol.readString(new ByteArrayInputStream(output.toByteArray()), 255));
+	}
+
+	@Test
+	public void rejectsOversizedAndTruncatedStrings() {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		MinecraftProtocol.writeString(output, "a".repeat(41));
+		assertThrows(IOException.class, () -> MinecraftProtocol.readString(new ByteArrayInputStream(output.toByteArray()), 10));
+		assertThrows(EOFException.class, () -> MinecraftProtocol.readString(input(0x05, 'a', 'b'), 10));
+	}
+
+	@Test
+	public void escapesJson() {
+		assertEquals("\\\"quoted\\\" \\\\ line\\nbreak\\ttab \\u0001", MinecraftProtocol.escapeJson("\"quoted\" \\ line\nbreak\ttab \u0001"));
+	}
+
+	private static int readVarInt(int... bytes) throws IOException {
+		return MinecraftProtocol.readVarInt(input(bytes));
+	}
+
+	private static ByteArrayInputStream input(int... bytes) {
+		byte[] data = new byte[bytes.length];
+		for (int i = 0; i < bytes.length; i++) {
+			data[i] = (byte) bytes[i];
+		}
+		return new ByteArrayInputStream(data);
+	}
+}
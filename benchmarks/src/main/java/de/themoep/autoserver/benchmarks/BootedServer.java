@@ -0,0 +1,91 @@
+package de.themoep.autoserver.benchmarks;
+
+/*
+ * AutoServer - benchmarks
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.autoserver.application.Handshake;
+import de.themoep.autoserver.application.MinecraftProtocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * Stands in for a Minecraft server that finished booting. It answers status pings with a real protocol version.
+ */
+public class BootedServer implements AutoCloseable {
+	private static final int PROTOCOL_VERSION = 767;
+
+	private final ServerSocket serverSocket;
+	private final byte[] statusResponse;
+
+	public BootedServer(int port) throws IOException {
+		ByteArrayOutputStream json = new ByteArrayOutputStream();
+		MinecraftProtocol.writeString(json, "{\"version\":{\"name\":\"1.21.1\",\"protocol\":" + PROTOCOL_VERSION + "},"
+				+ "\"players\":{\"max\":20,\"online\":0},\"description\":{\"text\":\"A Minecraft Server\"}}");
+		statusResponse = MinecraftProtocol.encodePacket(MinecraftProtocol.STATUS_RESPONSE_PACKET, json.toByteArray());
+
+		serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		Thread.ofVirtual().name("booted-server-" + port).start(this::acceptConnections);
+	}
+
+	private void acceptConnections() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread.ofVirtual().start(() -> handle(socket));
+			} catch (IOException e) {
+				// Socket got closed
+			}
+		}
+	}
+
+	private void handle(Socket socket) {
+		try (socket) {
+			socket.setSoTimeout(5000);
+			InputStream input = socket.getInputStream();
+			OutputStream output = socket.getOutputStream();
+			Handshake handshake = Handshake.read(MinecraftProtocol.readPacket(input, 1024));
+			if (handshake.nextState() != MinecraftProtocol.STATE_STATUS) {
+				// Logins only need to reach the server
+				return;
+			}
+			MinecraftProtocol.readPacket(input, 1024);
+			output.write(statusResponse);
+			output.flush();
+			// Echo the ping request if the client sends one
+			byte[] ping = MinecraftProtocol.readPacket(input, 1024);
+			output.write(MinecraftProtocol.encodePacket(MinecraftProtocol.PING_PACKET, Arrays.copyOfRange(ping, 1, ping.length)));
+		} catch (IOException e) {
+			// Client went away
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+}
@@ -0,0 +1,268 @@
+package de.themoep.autoserver.benchmarks;
+
+/*
+ * AutoServer - benchmarks
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.event.Continuation;
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import de.themoep.autoserver.velocity.EventListener;
+import de.themoep.autoserver.velocity.FakeBackend;
+import de.themoep.autoserver.velocity.StubProxy;
+import de.themoep.autoserver.velocity.Stubs;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulates a storm of players joining sleeping servers. Every server is a real AutoServer application
+ * process on localhost, the plugin runs against a {@link StubProxy}.
+ * <p>
+ * Usage: <code>java -cp AutoServer-Benchmarks.jar de.themoep.autoserver.benchmarks.LoginStorm [--option value]...</code>
+ */
+public class LoginStorm {
+	private static final Map<String, String> DEFAULTS = Map.of(
+			"servers", "10",
+			"players", "2000",
+			"join-window", "30",
+			"boot-time", "10",
+			"timeout", "300",
+			"event-threads", "4",
+			"scheduler-threads", "4",
+			"seed", "0",
+			"config", ""
+	);
+
+	private final Map<String, String> options;
+	private final ExecutorService virtualExecutor = Executors.newVirtualThreadPerTaskExecutor();
+	private final ScheduledExecutorService driver = Executors.newScheduledThreadPool(2);
+	private final Map<UUID, Long> joinTimes = new ConcurrentHashMap<>();
+	private final Map<UUID, RegisteredServer> targets = new ConcurrentHashMap<>();
+	private final ConcurrentLinkedQueue<Long> wakeLatencies = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger directJoins = new AtomicInteger();
+	private final AtomicInteger disconnects = new AtomicInteger();
+	private final LongAdder eventBusyNanos = new LongAdder();
+	private CountDownLatch finished;
+
+	public LoginStorm(Map<String, String> options) {
+		this.options = options;
+	}
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = new HashMap<>(DEFAULTS);
+		for (int i = 0; i < args.length; i++) {
+			if (!args[i].startsWith("--") || !DEFAULTS.containsKey(args[i].substring(2)) || i + 1 >= args.length) {
+				System.err.println("Unknown option " + args[i] + "! Available options: " + String.join(", ", DEFAULTS.keySet()));
+				System.exit(1);
+			}
+			options.put(args[i].substring(2), args[++i]);
+		}
+		new LoginStorm(options).run();
+		System.exit(0);
+	}
+
+	private int getInt(String option) {
+		return Integer.parseInt(options.get(option));
+	}
+
+	public void run() throws Exception {
+		int serverCount = getInt("servers");
+		int playerCount = getInt("players");
+		long joinWindow = getInt("join-window") * 1000L;
+		int eventThreads = getInt("event-threads");
+		finished = new CountDownLatch(playerCount);
+
+		StatusPinger pinger = new StatusPinger(virtualExecutor, 3000);
+		StubProxy proxy = new StubProxy(getInt("scheduler-threads"));
+		FakeBackend lobby = new FakeBackend(true);
+		List<SleepingBackend> backends = new ArrayList<>();
+		ExecutorService eventExecutor = Executors.newFixedThreadPool(eventThreads);
+		try {
+			proxy.addServer("lobby", lobby);
+			proxy.setAttemptConnectionOrder("lobby");
+			List<RegisteredServer> servers = new ArrayList<>();
+			for (int i = 0; i < serverCount; i++) {
+				SleepingBackend backend = new SleepingBackend("server" + i, getFreePort(), getInt("boot-time") * 1000L, driver);
+				backends.add(backend);
+				backend.start();
+				servers.add(proxy.addServer(backend.getName(), backend.getAddress(), () -> pinger.ping(backend.getAddress())));
+			}
+			for (SleepingBackend backend : backends) {
+				waitUntilListening(pinger, backend);
+			}
+			System.out.println("Started " + serverCount + " sleeping servers");
+
+			proxy.setConnector(this::connect);
+			proxy.setDisconnectHandler(player -> {
+				if (joinTimes.remove(player.getUniqueId()) != null) {
+					disconnects.incrementAndGet();
+					finished.countDown();
+				}
+			});
+			String config = options.get("config");
+			proxy.createPlugin(config.isEmpty() ? null : Files.readString(Path.of(config)));
+			EventListener listener = proxy.getListener(EventListener.class);
+
+			ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+			threads.resetPeakThreadCount();
+			long schedulerBusyStart = proxy.getSchedulerBusyNanos();
+			long start = System.nanoTime();
+
+			Random random = new Random(Long.parseLong(options.get("seed")));
+			for (int i = 0; i < playerCount; i++) {
+				Player player = proxy.createPlayer("Player" + i);
+				RegisteredServer target = servers.get(random.nextInt(servers.size()));
+				driver.schedule(() -> eventExecutor.execute(() -> join(listener, player, target)),
+						(long) (random.nextDouble() * joinWindow), TimeUnit.MILLISECONDS);
+			}
+			System.out.println("Joining " + playerCount + " players within " + joinWindow / 1000 + " seconds...");
+
+			boolean completed = finished.await(joinWindow + getInt("timeout") * 1000L, TimeUnit.MILLISECONDS);
+			long wallNanos = System.nanoTime() - start;
+
+			List<Long> latencies = new ArrayList<>(wakeLatencies);
+			latencies.sort(null);
+			int booted = (int) backends.stream().filter(SleepingBackend::isBooted).count();
+			System.out.println();
+			System.out.println("Players:         " + playerCount + " (" + latencies.size() + " woke a server, "
+					+ directJoins.get() + " joined directly, " + disconnects.get() + " disconnected, "
+					+ (completed ? 0 : finished.getCount()) + " still waiting)");
+			System.out.println("Servers woken:   " + booted + "/" + serverCount);
+			if (!latencies.isEmpty()) {
+				System.out.println("Wake-to-connect: p50 " + percentile(latencies, 0.5) + " ms, p99 " + percentile(latencies, 0.99)
+						+ " ms, max " + latencies.get(latencies.size() - 1) + " ms");
+			}
+			System.out.println("Event threads:   " + formatOccupancy(eventBusyNanos.sum(), eventThreads, wallNanos));
+			System.out.println("Scheduler:       " + formatOccupancy(proxy.getSchedulerBusyNanos() - schedulerBusyStart, proxy.getSchedulerThreads(), wallNanos));
+			System.out.println("Peak threads:    " + threads.getPeakThreadCount());
+		} finally {
+			eventExecutor.shutdownNow();
+			proxy.shutdown();
+			lobby.close();
+			for (SleepingBackend backend : backends) {
+				backend.close();
+			}
+			driver.shutdownNow();
+			virtualExecutor.shutdownNow();
+		}
+	}
+
+	private void join(EventListener listener, Player player, RegisteredServer target) {
+		long start = System.nanoTime();
+		joinTimes.put(player.getUniqueId(), start);
+		targets.put(player.getUniqueId(), target);
+		PlayerChooseInitialServerEvent event = new PlayerChooseInitialServerEvent(player, target);
+		EventTask task = listener.onSelectServer(event);
+		if (task == null) {
+			onServerSelected(event, player, target);
+		} else {
+			task.execute(Stubs.create(Continuation.class, Map.of(
+					"resume", args -> {
+						onServerSelected(event, player, target);
+						return null;
+					},
+					"resumeWithException", args -> {
+						onServerSelected(event, player, target);
+						return null;
+					}
+			)));
+		}
+		eventBusyNanos.add(System.nanoTime() - start);
+	}
+
+	private void onServerSelected(PlayerChooseInitialServerEvent event, Player player, RegisteredServer target) {
+		if (event.getInitialServer().orElse(null) == target && joinTimes.remove(player.getUniqueId()) != null) {
+			// Server was already online
+			directJoins.incrementAndGet();
+			finished.countDown();
+		}
+	}
+
+	private CompletableFuture<Boolean> connect(Player player, RegisteredServer server) {
+		if (targets.get(player.getUniqueId()) != server) {
+			return CompletableFuture.completedFuture(true);
+		}
+		return CompletableFuture.supplyAsync(() -> {
+			try (Socket socket = new Socket()) {
+				socket.connect(server.getServerInfo().getAddress(), 3000);
+				return true;
+			} catch (IOException e) {
+				return false;
+			}
+		}, virtualExecutor).thenApply(success -> {
+			Long joinTime = success ? joinTimes.remove(player.getUniqueId()) : null;
+			if (joinTime != null) {
+				wakeLatencies.add((System.nanoTime() - joinTime) / 1_000_000);
+				finished.countDown();
+			}
+			return success;
+		});
+	}
+
+	private void waitUntilListening(StatusPinger pinger, SleepingBackend backend) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (true) {
+			try {
+				pinger.ping(backend.getAddress()).join();
+				return;
+			} catch (RuntimeException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw new IllegalStateException("Application of " + backend.getName() + " didn't start listening", e);
+				}
+				Thread.sleep(100);
+			}
+		}
+	}
+
+	private static int getFreePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static long percentile(List<Long> sorted, double percentile) {
+		return sorted.get(Math.max(0, (int) Math.ceil(percentile * sorted.size()) - 1));
+	}
+
+	private static String formatOccupancy(long busyNanos, int threads, long wallNanos) {
+		return String.format("%.2f%% busy on %d threads (%d ms)", 100.0 * busyNanos / ((double) threads * wallNanos), threads, busyNanos / 1_000_000);
+	}
+}
@@ -0,0 +1,107 @@
+package de.themoep.autoserver.benchmarks;
+
+/*
+ * AutoServer - benchmarks
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.event.Continuation;
+import com.velocitypowered.api.event.EventTask;
+import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import de.themoep.autoserver.velocity.EventListener;
+import de.themoep.autoserver.velocity.FakeBackend;
+import de.themoep.autoserver.velocity.StubProxy;
+import de.themoep.autoserver.velocity.Stubs;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how many initial server selections the listener handles when the target server is online or sleeping
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class SelectServerBenchmark {
+	private static final Continuation CONTINUATION = Stubs.create(Continuation.class, Map.of());
+
+	@Param({"online", "offline"})
+	public String targetState;
+
+	@Param({"1000"})
+	public int playerCount;
+
+	private StubProxy proxy;
+	private FakeBackend lobbyBackend;
+	private FakeBackend targetBackend;
+	private EventListener listener;
+	private RegisteredServer target;
+	private Player[] players;
+	private final AtomicInteger next = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		proxy = new StubProxy(Runtime.getRuntime().availableProcessors());
+		lobbyBackend = new FakeBackend(true);
+		targetBackend = new FakeBackend("online".equals(targetState));
+		proxy.addServer("lobby", lobbyBackend);
+		target = proxy.addServer("target", targetBackend);
+		proxy.setAttemptConnectionOrder("lobby");
+		proxy.createPlugin(null);
+		listener = proxy.getListener(EventListener.class);
+		players = new Player[playerCount];
+		for (int i = 0; i < playerCount; i++) {
+			players[i] = proxy.createPlayer("Player" + i);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		proxy.shutdown();
+		lobbyBackend.close();
+		targetBackend.close();
+	}
+
+	@Benchmark
+	public PlayerChooseInitialServerEvent selectServer() {
+		Player player = players[Math.floorMod(next.getAndIncrement(), players.length)];
+		PlayerChooseInitialServerEvent event = new PlayerChooseInitialServerEvent(player, target);
+		EventTask task = listener.onSelectServer(event);
+		if (task != null) {
+			task.execute(CONTINUATION);
+		}
+		return event;
+	}
+}
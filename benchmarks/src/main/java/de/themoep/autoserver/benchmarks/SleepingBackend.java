@@ -0,0 +1,127 @@
+package de.themoep.autoserver.benchmarks;
+
+/*
+ * AutoServer - benchmarks
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.autoserver.application.Main;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * A backend which sleeps in a real AutoServer application process.
+ * Once a start request made the application exit a {@link BootedServer} takes over its port after the boot time.
+ */
+public class SleepingBackend implements AutoCloseable {
+	private final String name;
+	private final int port;
+	private final long bootTime;
+	private final ScheduledExecutorService scheduler;
+	private final Path directory;
+	private Process process;
+	private volatile BootedServer bootedServer;
+	private volatile boolean closed = false;
+
+	/**
+	 * @param name      The name of the server
+	 * @param port      The port to listen on
+	 * @param bootTime  How long the server takes to boot after it was woken, in milliseconds
+	 * @param scheduler The scheduler to boot the server with
+	 */
+	public SleepingBackend(String name, int port, long bootTime, ScheduledExecutorService scheduler) throws IOException {
+		this.name = name;
+		this.port = port;
+		this.bootTime = bootTime;
+		this.scheduler = scheduler;
+		directory = Files.createTempDirectory("autoserver-" + name);
+		Files.writeString(directory.resolve("server.properties"), "server-ip=127.0.0.1\n"
+				+ "server-port=" + port + "\n"
+				+ "motd=" + name + "\n"
+				+ "max-players=20\n");
+	}
+
+	/**
+	 * Start the AutoServer application in its own process
+	 */
+	public void start() throws IOException {
+		process = new ProcessBuilder(
+				Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+				"-cp", System.getProperty("java.class.path"),
+				Main.class.getName())
+				.directory(directory.toFile())
+				.redirectErrorStream(true)
+				.redirectOutput(directory.resolve("application.log").toFile())
+				.start();
+		process.onExit().thenRun(this::boot);
+	}
+
+	private void boot() {
+		if (closed) {
+			return;
+		}
+		scheduler.schedule(() -> {
+			try {
+				if (!closed) {
+					bootedServer = new BootedServer(port);
+				}
+			} catch (IOException e) {
+				System.err.println("Unable to boot " + name + ": " + e.getMessage());
+			}
+		}, bootTime, TimeUnit.MILLISECONDS);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public InetSocketAddress getAddress() {
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	}
+
+	public boolean isBooted() {
+		return bootedServer != null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		if (process != null) {
+			process.destroy();
+			try {
+				process.waitFor(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (bootedServer != null) {
+			bootedServer.close();
+		}
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+				Files.delete(path);
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package de.themoep.autoserver.benchmarks;
+
+/*
+ * AutoServer - benchmarks
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import de.themoep.autoserver.velocity.AutoServer;
+import de.themoep.autoserver.velocity.EventListener;
+import de.themoep.autoserver.velocity.FakeBackend;
+import de.themoep.autoserver.velocity.StubProxy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of one more player joining and leaving a server start
+ * which already has the given amount of players waiting for it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StartServerBenchmark {
+
+	@Param({"1", "100", "1000"})
+	public int waitingPlayers;
+
+	private StubProxy proxy;
+	private FakeBackend lobbyBackend;
+	private FakeBackend targetBackend;
+	private AutoServer plugin;
+	private EventListener listener;
+	private RegisteredServer target;
+	private Player joiningPlayer;
+	private DisconnectEvent quitEvent;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		proxy = new StubProxy(Runtime.getRuntime().availableProcessors());
+		lobbyBackend = new FakeBackend(true);
+		targetBackend = new FakeBackend(false);
+		proxy.addServer("lobby", lobbyBackend);
+		target = proxy.addServer("target", targetBackend);
+		proxy.setAttemptConnectionOrder("lobby");
+		plugin = proxy.createPlugin(null);
+		listener = proxy.getListener(EventListener.class);
+		for (int i = 0; i < waitingPlayers; i++) {
+			plugin.startServer(proxy.createPlayer("Waiting" + i), target);
+		}
+		joiningPlayer = proxy.createPlayer("Joining");
+		quitEvent = new DisconnectEvent(joiningPlayer, DisconnectEvent.LoginStatus.SUCCESSFUL_LOGIN);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		proxy.shutdown();
+		lobbyBackend.close();
+		targetBackend.close();
+	}
+
+	@Benchmark
+	public void startServer() {
+		plugin.startServer(joiningPlayer, target);
+		listener.onPlayerQuit(quitEvent);
+	}
+}
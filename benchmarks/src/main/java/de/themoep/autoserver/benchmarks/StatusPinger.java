@@ -0,0 +1,101 @@
+package de.themoep.autoserver.benchmarks;
+
+/*
+ * AutoServer - benchmarks
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.server.ServerPing;
+import de.themoep.autoserver.application.MinecraftProtocol;
+import net.kyori.adventure.text.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pings servers over the network with the Minecraft status protocol like the proxy would
+ */
+public class StatusPinger {
+	private static final Pattern PROTOCOL_PATTERN = Pattern.compile("\"protocol\"\\s*:\\s*(-?\\d+)");
+	private static final Pattern ONLINE_PATTERN = Pattern.compile("\"online\"\\s*:\\s*(\\d+)");
+
+	private final ExecutorService executor;
+	private final int timeout;
+
+	/**
+	 * @param executor The executor to run the blocking pings on
+	 * @param timeout  The connect and read timeout in milliseconds
+	 */
+	public StatusPinger(ExecutorService executor, int timeout) {
+		this.executor = executor;
+		this.timeout = timeout;
+	}
+
+	public CompletableFuture<ServerPing> ping(InetSocketAddress address) {
+		CompletableFuture<ServerPing> future = new CompletableFuture<>();
+		executor.execute(() -> {
+			try {
+				future.complete(pingBlocking(address));
+			} catch (IOException | RuntimeException e) {
+				future.completeExceptionally(e);
+			}
+		});
+		return future;
+	}
+
+	private ServerPing pingBlocking(InetSocketAddress address) throws IOException {
+		try (Socket socket = new Socket()) {
+			socket.connect(address, timeout);
+			socket.setSoTimeout(timeout);
+			OutputStream output = socket.getOutputStream();
+			ByteArrayOutputStream handshake = new ByteArrayOutputStream();
+			MinecraftProtocol.writeVarInt(handshake, -1);
+			MinecraftProtocol.writeString(handshake, address.getHostString());
+			handshake.write((address.getPort() >> 8) & 0xFF);
+			handshake.write(address.getPort() & 0xFF);
+			MinecraftProtocol.writeVarInt(handshake, MinecraftProtocol.STATE_STATUS);
+			output.write(MinecraftProtocol.encodePacket(MinecraftProtocol.HANDSHAKE_PACKET, handshake.toByteArray()));
+			output.write(MinecraftProtocol.encodePacket(MinecraftProtocol.STATUS_REQUEST_PACKET, new byte[0]));
+			output.flush();
+
+			DataInputStream response = new DataInputStream(new ByteArrayInputStream(MinecraftProtocol.readPacket(socket.getInputStream(), 1024 * 1024)));
+			if (MinecraftProtocol.readVarInt(response) != MinecraftProtocol.STATUS_RESPONSE_PACKET) {
+				throw new IOException("Expected a status response from " + address);
+			}
+			String json = MinecraftProtocol.readString(response, 32767);
+			Matcher protocol = PROTOCOL_PATTERN.matcher(json);
+			if (!protocol.find()) {
+				throw new IOException("Status response of " + address + " has no protocol version");
+			}
+			Matcher online = ONLINE_PATTERN.matcher(json);
+			return ServerPing.builder()
+					.version(new ServerPing.Version(Integer.parseInt(protocol.group(1)), "Unknown"))
+					.onlinePlayers(online.find() ? Integer.parseInt(online.group(1)) : 0)
+					.maximumPlayers(20)
+					.description(Component.empty())
+					.build();
+		}
+	}
+}
@@ -18,38 +18,33 @@ package de.themoep.autoserver.velocity;
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.google.inject.Inject;
 import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
-import com.velocitypowered.api.proxy.server.PingOptions;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
-import com.velocitypowered.api.scheduler.ScheduledTask;
 import de.themoep.minedown.adventure.MineDown;
 import de.themoep.utils.lang.LangLogger;
+import de.themoep.utils.lang.LanguageConfig;
 import de.themoep.utils.lang.velocity.LanguageManager;
 import de.themoep.utils.lang.velocity.Languaged;
 import net.kyori.adventure.text.Component;
-import net.kyori.adventure.title.Title;
 import org.slf4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
 import java.nio.file.Path;
-import java.time.Duration;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 public class AutoServer implements Languaged {
@@ -63,31 +58,74 @@ public class AutoServer implements Languaged {
 	private Path dataFolder;
 
 	private VelocityPluginLogger pluginLogger;
-	private PluginConfig config;
 	private LanguageManager langManager;
+	private final TranslationCache translationCache = new TranslationCache();
 
-	private int pingTimeout;
-	private int pingInterval;
+	private volatile Settings settings;
 
-	private final Cache<String, Boolean> startingServers = CacheBuilder.newBuilder().expireAfterWrite(Duration.ofMinutes(2)).build();
-	private final Map<UUID, ScheduledTask> serverStartTasks = new HashMap<>();
+	private final ServerStatusCache statusCache = new ServerStatusCache(this);
+	private StartRequestClient startRequestClient;
+	private JoinHistory joinHistory;
+	private Prewarmer prewarmer;
+	private IdleShutdown idleShutdown;
+	private final StartQueue startQueue = new StartQueue(this);
+	private final Metrics metrics = new Metrics();
+	private final HttpEndpoint httpEndpoint = new HttpEndpoint(this);
+	private final FallbackSelector fallbackSelector = new FallbackSelector(this);
+	private BootStatistics bootStatistics;
+
+	private final Map<String, ServerState> serverStates = new ConcurrentHashMap<>();
+	private final Map<String, ServerStartTask> serverStartTasks = new ConcurrentHashMap<>();
+	private final Map<UUID, ServerStartTask> waitingPlayers = new ConcurrentHashMap<>();
 
 	@Subscribe
 	public void onProxyInitialization(ProxyInitializeEvent event) {
 		pluginLogger = new VelocityPluginLogger(slf4jLogger);
+		joinHistory = new JoinHistory(dataFolder.resolve("join-history.dat"));
+		prewarmer = new Prewarmer(this, joinHistory);
+		bootStatistics = new BootStatistics(dataFolder.resolve("boot-statistics.dat"));
+		idleShutdown = new IdleShutdown(this);
 		loadConfig();
 
 		proxy.getCommandManager().register("autoserver", new AutoServerCommand(this));
 
 		proxy.getEventManager().register(this, new EventListener(this));
 
+		try {
+			joinHistory.load();
+		} catch (IOException e) {
+			log(Level.SEVERE, "Unable to load join history", e);
+		}
+		try {
+			bootStatistics.load();
+		} catch (IOException e) {
+			log(Level.SEVERE, "Unable to load boot statistics", e);
+		}
+		prewarmer.start();
+		idleShutdown.start();
+		startQueue.start();
+
 		log(Level.INFO, "License: AGPL-3.0 (https://phoenix616.dev/licenses/agpl-v3.txt)");
 		log(Level.INFO, "Source: https://github.com/Phoenix616/AutoServer");
 	}
 
+	@Subscribe
+	public void onProxyShutdown(ProxyShutdownEvent event) {
+		prewarmer.stop();
+		idleShutdown.stop();
+		startQueue.stop();
+		httpEndpoint.stop();
+		try {
+			joinHistory.save();
+		} catch (IOException e) {
+			log(Level.SEVERE, "Unable to save join history", e);
+		}
+		saveBootStatistics();
+	}
+
 	boolean loadConfig() {
 		log(Level.INFO, "Loading configuration...");
-		config = new PluginConfig(this, dataFolder.resolve("config.yml"));
+		PluginConfig config = new PluginConfig(this, dataFolder.resolve("config.yml"));
 
 		try {
 			config.createDefaultConfig();
@@ -100,17 +138,26 @@ public class AutoServer implements Languaged {
 			return false;
 		}
 
-		langManager = new LanguageManager(this, config.getString("defaultLanguage"));
+		Settings settings = Settings.compile(this, config);
+		langManager = new LanguageManager(this, settings.defaultLanguage());
+		translationCache.clear();
 
-		pingTimeout = config.getInt("pingTimeout");
-		if (pingTimeout < 1) {
-			log(Level.WARNING, "Invalid pingTimeout value in config! Using default value of 3 seconds.");
-			pingTimeout = 3;
+		// Keep the client on reloads so queued requests and retries of ongoing starts don't get lost
+		if (startRequestClient == null || !this.settings.startRequest().equals(settings.startRequest())) {
+			if (startRequestClient != null) {
+				startRequestClient.shutdown();
+			}
+			startRequestClient = new StartRequestClient(this, settings.startRequest());
 		}
-		pingInterval = config.getInt("pingInterval");
-		if (pingInterval < 1) {
-			log(Level.WARNING, "Invalid pingInterval value in config! Using default value of 10 seconds.");
-			pingInterval = 10;
+
+		// Swap the whole snapshot at once so readers never see a mix of old and new settings
+		this.settings = settings;
+		statusCache.clear();
+
+		if (settings.httpEndpoint().enabled()) {
+			httpEndpoint.start(settings.httpEndpoint().address(), settings.httpEndpoint().port(), settings.httpEndpoint().readyToken());
+		} else {
+			httpEndpoint.stop();
 		}
 
 		return true;
@@ -142,82 +189,278 @@ public class AutoServer implements Languaged {
 		return langManager.getConfig(source).get(key);
 	}
 
+	public LanguageConfig<?> getLanguageConfig(CommandSource source) {
+		return langManager.getConfig(source);
+	}
+
+	/**
+	 * Get a translation from the cache, parsing it only if it isn't cached yet
+	 * @param config       The language to translate to
+	 * @param key          The key of the translation
+	 * @param replacements The placeholders and their replacements
+	 * @return The translated component
+	 */
+	public Component getCachedTranslation(LanguageConfig<?> config, String key, String... replacements) {
+		return translationCache.get(config, key, replacements);
+	}
+
 	public void startServer(Player player, RegisteredServer server) {
-		serverStartTasks.computeIfAbsent(player.getUniqueId(), (playerId) -> proxy.getScheduler().buildTask(this, () -> {
-			Player currentPlayer = proxy.getPlayer(playerId).orElse(null);
-			if (currentPlayer == null) {
-				cancelServerTask(playerId);
-				return;
+		startServer(player, server, false);
+	}
+
+	/**
+	 * Start a server and hold the player on the proxy instead of connecting them once it's online
+	 * @param player The player that is still choosing their initial server
+	 * @param server The server to start
+	 * @return A future that completes with whether the server came online
+	 */
+	public CompletableFuture<Boolean> holdPlayer(Player player, RegisteredServer server) {
+		return startServer(player, server, true);
+	}
+
+	private CompletableFuture<Boolean> startServer(Player player, RegisteredServer server, boolean hold) {
+		UUID playerId = player.getUniqueId();
+		AtomicReference<CompletableFuture<Boolean>> holdFuture = new AtomicReference<>();
+		ServerStartTask startTask = serverStartTasks.compute(server.getServerInfo().getName(), (serverName, task) -> {
+			// Tasks are only closed inside of compute calls so a player can never be added to a task that is done
+			if (task == null || task.isClosed()) {
+				task = new ServerStartTask(this, server);
 			}
-			try {
-				PingOptions pingOptions = PingOptions.builder().timeout(Duration.ofSeconds(pingTimeout)).version(currentPlayer.getProtocolVersion()).build();
-				if (server.ping(pingOptions).join() != null) {
-					currentPlayer.createConnectionRequest(server).connect().whenComplete((result, throwable) -> {
-						if (result.isSuccessful()) {
-							log(Level.INFO, "Connected player " + currentPlayer.getUsername() + " to server " + server.getServerInfo().getName());
-							startingServers.invalidate(server.getServerInfo().getName());
-						} else {
-							log(Level.WARNING, "Failed to connect player " + currentPlayer.getUsername() + " to server " + server.getServerInfo().getName()
-									+ ": " + result.getReasonComponent().map(MineDown::stringify).orElse("Unknown reason"));
-							player.disconnect(result.getReasonComponent()
-									.orElse(getTranslation(player, "server-starting.error", "server", server.getServerInfo().getName())));
-						}
-						if (throwable != null) {
-							log(Level.SEVERE, "Failed to connect player to server " + server.getServerInfo().getName(), throwable);
-						}
-					});
-					cancelServerTask(playerId);
-					return;
-				}
-			} catch (Exception e) {
-				// Server is offline
+			task.addPlayer(playerId);
+			if (hold) {
+				// Hold inside of the compute call so that the task can't complete before the player is held
+				holdFuture.set(task.hold(playerId, settings.fallback().maxHoldTime()));
 			}
-			currentPlayer.showTitle(Title.title(
-					getTranslation(currentPlayer, "server-starting.title", "server", server.getServerInfo().getName()),
-					getTranslation(currentPlayer, "server-starting.subtitle", "server", server.getServerInfo().getName()),
-					Title.Times.times(Duration.ZERO, Duration.ofSeconds(pingInterval + 1), Duration.ZERO)
-			));
-		}).delay(1, TimeUnit.SECONDS).repeat(pingInterval, TimeUnit.SECONDS).schedule());
-
-		if (startingServers.getIfPresent(server.getServerInfo().getName()) != null) {
+			return task;
+		});
+		ServerStartTask previousTask = waitingPlayers.put(playerId, startTask);
+		if (previousTask != null && previousTask != startTask) {
+			removeFromTask(previousTask, playerId);
+		}
+
+		sendStartRequest(server);
+		return holdFuture.get();
+	}
+
+	/**
+	 * Send a start request to a server if it isn't already starting
+	 * @param server The server to start
+	 */
+	public void sendStartRequest(RegisteredServer server) {
+		String serverName = server.getServerInfo().getName();
+		if (!getServerState(serverName).tryStart(settings.getServer(serverName).startTimeout() * 1000L)) {
 			// Already starting
 			return;
 		}
-		// Send a TCP packet to the server to start it
-		// This is a custom implementation and not part of the velocity api
+		startQueue.add(server);
+	}
+
+	void dispatchStartRequest(RegisteredServer server) {
+		String serverName = server.getServerInfo().getName();
+		long start = System.currentTimeMillis();
+		// Send a start request to the AutoServer application listening on the server's address
+		CompletableFuture<Boolean> request;
 		try {
-			URL url = new URL("http://" + server.getServerInfo().getAddress().getHostString() + ":" + server.getServerInfo().getAddress().getPort() + "/start");
-			// Send web request to url
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			startingServers.put(server.getServerInfo().getName(), true);
-			connection.connect();
-			if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
-				log(Level.INFO, "Sent start request to " + url);
-				return;
+			request = startRequestClient.sendStartRequest(server);
+		} catch (RuntimeException e) {
+			log(Level.SEVERE, "Unable to send start request to server " + serverName, e);
+			request = CompletableFuture.completedFuture(false);
+		}
+		// Any failure has to free the server's queue slot or it would count as starting until the start timeout
+		request.exceptionally(throwable -> {
+			log(Level.SEVERE, "Unable to send start request to server " + serverName, throwable);
+			return false;
+		}).thenAccept(success -> {
+			metrics.recordStartRequest(serverName, System.currentTimeMillis() - start, success);
+			if (success) {
+				getServerState(serverName).setRequestSentAt(start);
 			} else {
-				log(Level.WARNING, "Failed to send start request to " + url + " (HTTP " + connection.getResponseCode() + ")");
-				startingServers.invalidate(server.getServerInfo().getName());
+				startQueue.release(serverName);
+				getServerState(serverName).setOffline();
+				failServerStart(serverName);
 			}
-			connection.disconnect();
-		} catch (MalformedURLException e) {
-			log(Level.SEVERE, "Invalid server address: " + server.getServerInfo().getAddress(), e);
-		} catch (ProtocolException e) {
-			log(Level.SEVERE, "TCP connection error while trying to connect to " + server.getServerInfo().getAddress(), e);
-		} catch (IOException e) {
-			log(Level.SEVERE, "IO error while trying to connect to " + server.getServerInfo().getAddress(), e);
-		}
-		player.disconnect(getTranslation(player, "server-starting.error", "server", server.getServerInfo().getName()));
+		});
+	}
+
+	public boolean isStarting(String serverName) {
+		return getServerState(serverName).getState() == ServerState.WakeState.STARTING || serverStartTasks.containsKey(serverName);
+	}
+
+	/**
+	 * Get the server a player is waiting for
+	 * @param playerId The UUID of the player
+	 * @return The name of the server or <code>null</code> if the player isn't waiting for one
+	 */
+	String getWaitingFor(UUID playerId) {
+		ServerStartTask task = waitingPlayers.get(playerId);
+		return task != null ? task.getServerName() : null;
 	}
 
 	void cancelServerTask(UUID playerId) {
-		ScheduledTask task = serverStartTasks.remove(playerId);
+		ServerStartTask task = waitingPlayers.remove(playerId);
 		if (task != null) {
+			removeFromTask(task, playerId);
+		}
+	}
+
+	private void removeFromTask(ServerStartTask startTask, UUID playerId) {
+		serverStartTasks.computeIfPresent(startTask.getServerName(), (serverName, task) -> {
+			if (task != startTask) {
+				return task;
+			}
+			task.removePlayer(playerId);
+			if (task.isEmpty()) {
+				task.cancel();
+				return null;
+			}
+			return task;
+		});
+	}
+
+	private void failServerStart(String serverName) {
+		ServerStartTask startTask = serverStartTasks.get(serverName);
+		if (startTask != null && closeTask(startTask)) {
+			for (UUID playerId : startTask.getWaitingPlayers()) {
+				waitingPlayers.remove(playerId, startTask);
+				proxy.getPlayer(playerId).ifPresent(player -> player.disconnect(
+						getTranslation(player, "server-starting.error", "server", serverName)));
+			}
+		}
+	}
+
+	void completeServerStart(ServerStartTask startTask) {
+		closeTask(startTask);
+		for (UUID playerId : startTask.getWaitingPlayers()) {
+			waitingPlayers.remove(playerId, startTask);
+		}
+		startQueue.release(startTask.getServerName());
+	}
+
+	/**
+	 * Atomically close a start task and remove it so that no further players get added to it
+	 * @param startTask The task to close
+	 * @return Whether the task was still registered
+	 */
+	private boolean closeTask(ServerStartTask startTask) {
+		AtomicBoolean removed = new AtomicBoolean(false);
+		serverStartTasks.computeIfPresent(startTask.getServerName(), (serverName, task) -> {
+			if (task != startTask) {
+				return task;
+			}
 			task.cancel();
+			removed.set(true);
+			return null;
+		});
+		startTask.cancel();
+		return removed.get();
+	}
+
+	public ServerState getServerState(String serverName) {
+		return serverStates.computeIfAbsent(serverName, ServerState::new);
+	}
+
+	public int getWaitingPlayerCount(String serverName) {
+		ServerStartTask startTask = serverStartTasks.get(serverName);
+		return startTask != null ? startTask.getWaitingPlayers().size() : 0;
+	}
+
+	/**
+	 * Called when a server notified the plugin that it finished booting
+	 * @param serverName The name of the server
+	 * @return Whether the server is known
+	 */
+	boolean onServerReady(String serverName) {
+		RegisteredServer server = proxy.getServer(serverName).orElse(null);
+		if (server == null) {
+			return false;
+		}
+		log(Level.INFO, "Server " + serverName + " reported that it is ready");
+		ServerStartTask startTask = serverStartTasks.get(serverName);
+		if (startTask != null) {
+			startTask.pollNow();
+		} else {
+			statusCache.ping(server);
+		}
+		return true;
+	}
+
+	void onServerOnline(String serverName) {
+		ServerState state = getServerState(serverName);
+		long start = state.getRequestSentAt();
+		if (state.setOnline() == ServerState.WakeState.STARTING && start > 0) {
+			bootStatistics.record(serverName, System.currentTimeMillis() - start);
+			proxy.getScheduler().buildTask(this, this::saveBootStatistics).schedule();
+		}
+	}
+
+	void onServerOffline(String serverName) {
+		getServerState(serverName).setOfflineIfOnline();
+	}
+
+	/**
+	 * Get the delay until the next ping of a starting server
+	 * @param serverName The name of the server
+	 * @return The delay in milliseconds
+	 */
+	long getNextPingDelay(String serverName) {
+		Settings settings = this.settings;
+		long interval = settings.getServer(serverName).pingInterval() * 1000L;
+		if (!settings.adaptivePing().enabled()) {
+			return interval;
+		}
+		long start = getServerState(serverName).getRequestSentAt();
+		return bootStatistics.getNextPingDelay(serverName, start > 0 ? System.currentTimeMillis() - start : -1, interval, settings.adaptivePing().minInterval() * 1000L);
+	}
+
+	private void saveBootStatistics() {
+		try {
+			bootStatistics.save();
+		} catch (IOException e) {
+			log(Level.SEVERE, "Unable to save boot statistics", e);
 		}
 	}
 
-	public int getPingTimeout() {
-		return pingTimeout;
+	public Map<String, Integer> getWaitingPlayerCounts() {
+		Map<String, Integer> counts = new HashMap<>();
+		for (ServerStartTask startTask : serverStartTasks.values()) {
+			counts.put(startTask.getServerName(), startTask.getWaitingPlayers().size());
+		}
+		return counts;
+	}
+
+	public boolean isWaitingFor(String serverName) {
+		return serverStartTasks.containsKey(serverName);
+	}
+
+	/**
+	 * Get the current settings. Callers that need several values should only get the snapshot once.
+	 * @return The settings which were compiled on the last (re)load
+	 */
+	public Settings getSettings() {
+		return settings;
+	}
+
+	public ServerStatusCache getStatusCache() {
+		return statusCache;
+	}
+
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	public StartQueue getStartQueue() {
+		return startQueue;
+	}
+
+	public FallbackSelector getFallbackSelector() {
+		return fallbackSelector;
+	}
+
+	public IdleShutdown getIdleShutdown() {
+		return idleShutdown;
+	}
+
+	public JoinHistory getJoinHistory() {
+		return joinHistory;
 	}
 }
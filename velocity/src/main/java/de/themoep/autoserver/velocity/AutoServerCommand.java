@@ -18,9 +18,15 @@ package de.themoep.autoserver.velocity;
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import com.velocitypowered.api.command.CommandSource;
 import com.velocitypowered.api.command.SimpleCommand;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
 
 import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class AutoServerCommand implements SimpleCommand {
 	private final AutoServer plugin;
@@ -41,6 +47,50 @@ public class AutoServerCommand implements SimpleCommand {
 							invocation.source().sendMessage(plugin.getTranslation(invocation.source(), "command.reload-failed"));
 						}
 					}
+					case "status" -> {
+						if (invocation.arguments().length > 1) {
+							Optional<RegisteredServer> server = plugin.getProxy().getServer(invocation.arguments()[1]);
+							if (server.isPresent()) {
+								sendStatus(invocation.source(), server.get());
+							} else {
+								invocation.source().sendMessage(plugin.getTranslation(invocation.source(), "command.unknown-server",
+										"input", invocation.arguments()[1]));
+							}
+						} else {
+							for (RegisteredServer server : plugin.getProxy().getAllServers()) {
+								sendStatus(invocation.source(), server);
+							}
+						}
+					}
+					case "stats" -> {
+						Metrics metrics = plugin.getMetrics();
+						Map<String, Integer> waitingPlayers = plugin.getWaitingPlayerCounts();
+						Set<String> serverNames = new TreeSet<>(metrics.getServerNames());
+						serverNames.addAll(waitingPlayers.keySet());
+						if (invocation.arguments().length > 1) {
+							serverNames.retainAll(Set.of(invocation.arguments()[1]));
+						}
+						if (serverNames.isEmpty()) {
+							invocation.source().sendMessage(plugin.getTranslation(invocation.source(), "command.stats.empty"));
+						}
+						for (String serverName : serverNames) {
+							Metrics.Histogram wakes = metrics.getWakeDurations(serverName);
+							Metrics.Histogram startRequests = metrics.getStartRequestDurations(serverName);
+							Metrics.Histogram pings = metrics.getPingDurations(serverName);
+							invocation.source().sendMessage(plugin.getTranslation(invocation.source(), "command.stats.server",
+									"server", serverName,
+									"waiting", String.valueOf(waitingPlayers.getOrDefault(serverName, 0)),
+									"wakes", String.valueOf(wakes != null ? wakes.getCount() : 0),
+									"wake-avg", String.valueOf(wakes != null ? wakes.getAverage() / 1000 : 0),
+									"wake-p99", formatQuantile(wakes),
+									"requests", String.valueOf(startRequests != null ? startRequests.getCount() : 0),
+									"request-failures", String.valueOf(metrics.getStartRequestFailures(serverName)),
+									"request-avg", String.valueOf(startRequests != null ? startRequests.getAverage() : 0),
+									"pings", String.valueOf(pings != null ? pings.getCount() : 0),
+									"ping-failures", String.valueOf(metrics.getPingFailures(serverName)),
+									"ping-avg", String.valueOf(pings != null ? pings.getAverage() : 0)));
+						}
+					}
 					default -> invocation.source().sendMessage(plugin.getTranslation(invocation.source(), "command.unknown-subcommand"));
 				}
 			} else {
@@ -49,6 +99,32 @@ public class AutoServerCommand implements SimpleCommand {
 		}
 	}
 
+	private static String formatQuantile(Metrics.Histogram histogram) {
+		if (histogram == null || histogram.getCount() == 0) {
+			return "-";
+		}
+		long quantile = histogram.getQuantile(0.99);
+		return quantile < 0 ? ">300" : String.valueOf(quantile / 1000.0);
+	}
+
+	private void sendStatus(CommandSource source, RegisteredServer server) {
+		ServerStatus status = plugin.getStatusCache().getLastStatus(server);
+		String serverName = server.getServerInfo().getName();
+		if (status == null) {
+			source.sendMessage(plugin.getTranslation(source, "command.status.unknown", "server", serverName));
+		} else if (status.online()) {
+			source.sendMessage(plugin.getTranslation(source, "command.status.online",
+					"server", serverName,
+					"rtt", String.valueOf(status.rtt()),
+					"players", String.valueOf(status.players()),
+					"age", String.valueOf(status.getAge() / 1000)));
+		} else {
+			source.sendMessage(plugin.getTranslation(source, "command.status.offline",
+					"server", serverName,
+					"age", String.valueOf(status.getAge() / 1000)));
+		}
+	}
+
 	@Override
 	public boolean hasPermission(Invocation invocation) {
 		return invocation.source().hasPermission("autoserver.command");
@@ -0,0 +1,140 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps an exponentially weighted mean and variance of how long each server needs to boot
+ */
+public class BootStatistics {
+	private static final int FILE_VERSION = 1;
+	private static final double WEIGHT = 0.3;
+
+	private final Path file;
+	private final Map<String, Entry> entries = new HashMap<>();
+
+	public BootStatistics(Path file) {
+		this.file = file;
+	}
+
+	public synchronized void record(String serverName, long millis) {
+		Entry entry = entries.get(serverName);
+		if (entry == null) {
+			// Assume a quarter of the first boot time as the deviation until there are more boots
+			entries.put(serverName, new Entry(millis, Math.pow(millis / 4.0, 2)));
+		} else {
+			double diff = millis - entry.mean;
+			entry.mean += WEIGHT * diff;
+			entry.variance = (1 - WEIGHT) * (entry.variance + WEIGHT * diff * diff);
+		}
+	}
+
+	/**
+	 * Get the delay until a starting server should be pinged next. Pings are sparse early in the boot,
+	 * more frequent around the usual boot time and regular after it. The pings saved early in the boot are
+	 * spread over the window around the usual boot time so that a start never needs more pings than it would
+	 * with the regular interval.
+	 * @param serverName The name of the server
+	 * @param elapsed How long the server has been starting in milliseconds or -1 if unknown
+	 * @param interval The regular ping interval in milliseconds
+	 * @param minInterval The shortest interval in milliseconds
+	 * @return The delay in milliseconds
+	 */
+	public synchronized long getNextPingDelay(String serverName, long elapsed, long interval, long minInterval) {
+		Entry entry = entries.get(serverName);
+		if (entry == null || elapsed < 0) {
+			return interval;
+		}
+		double deviation = Math.sqrt(entry.variance);
+		long windowStart = (long) Math.max(0, entry.mean - 2 * deviation);
+		long windowEnd = (long) (entry.mean + 2 * deviation);
+		// What the regular interval would have needed until the end of the window minus what was used before it
+		long budget = windowEnd / interval - ceilDiv(windowStart, interval * 2);
+		if (budget < 1) {
+			// The server usually boots faster than the interval so there are no pings to move into the window
+			return interval;
+		} else if (elapsed < windowStart) {
+			return Math.max(minInterval, Math.min(windowStart - elapsed, interval * 2));
+		} else if (elapsed <= windowEnd) {
+			return Math.max(minInterval, (windowEnd - windowStart) / budget);
+		}
+		return interval;
+	}
+
+	private static long ceilDiv(long dividend, long divisor) {
+		return (dividend + divisor - 1) / divisor;
+	}
+
+	public synchronized long getAverage(String serverName) {
+		Entry entry = entries.get(serverName);
+		return entry != null ? (long) entry.mean : -1;
+	}
+
+	public synchronized void load() throws IOException {
+		entries.clear();
+		if (!Files.exists(file)) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			int version = in.readInt();
+			if (version != FILE_VERSION) {
+				throw new IOException("Unsupported boot statistics version " + version);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				entries.put(in.readUTF(), new Entry(in.readDouble(), in.readDouble()));
+			}
+		}
+	}
+
+	public synchronized void save() throws IOException {
+		Files.createDirectories(file.getParent());
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(FILE_VERSION);
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				out.writeUTF(e.getKey());
+				out.writeDouble(e.getValue().mean);
+				out.writeDouble(e.getValue().variance);
+			}
+		}
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	private static class Entry {
+		private double mean;
+		private double variance;
+
+		private Entry(double mean, double variance) {
+			this.mean = mean;
+			this.variance = variance;
+		}
+	}
+}
@@ -18,17 +18,18 @@ package de.themoep.autoserver.velocity;
  * along with this program.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import com.velocitypowered.api.event.Continuation;
+import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.player.PlayerChooseInitialServerEvent;
 import com.velocitypowered.api.event.player.ServerConnectedEvent;
-import com.velocitypowered.api.proxy.server.PingOptions;
+import com.velocitypowered.api.event.player.ServerPreConnectEvent;
+import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.server.RegisteredServer;
-import com.velocitypowered.api.proxy.server.ServerPing;
 
-import java.util.Optional;
-import java.util.concurrent.TimeUnit;
+import java.time.ZonedDateTime;
 
 public class EventListener {
 	private final AutoServer plugin;
@@ -38,53 +39,101 @@ public class EventListener {
 	}
 
 	@Subscribe(order = PostOrder.CUSTOM, priority = -9001)
-	public void onSelectServer(PlayerChooseInitialServerEvent event) {
+	public EventTask onSelectServer(PlayerChooseInitialServerEvent event) {
+		event.getInitialServer().ifPresent(server -> plugin.getJoinHistory().record(server.getServerInfo().getName(), ZonedDateTime.now()));
+
 		if (event.getInitialServer().isEmpty() || !event.getInitialServer().get().getPlayersConnected().isEmpty()) {
 			// Server is not empty therefore it's online and the player can just keep connecting to it
-			return;
+			return null;
 		}
 
 		RegisteredServer targetServer = event.getInitialServer().get();
 
-		// Check if target server is online
-		try {
-			ServerPing ping = targetServer
-					.ping(PingOptions.builder()
-							.version(event.getPlayer().getProtocolVersion())
-							.timeout(plugin.getPingTimeout(), TimeUnit.SECONDS)
-							.build())
-					.join();
-			if (ping != null) {
-				// Server is online, let the player connect
-				return;
-			}
-		} catch (Exception e) {
-			// Server is offline, continue
-		}
+		// Check if target server is online without blocking the event thread
+		return EventTask.withContinuation(continuation -> plugin.getStatusCache().getStatus(targetServer, event.getPlayer().getProtocolVersion())
+				.whenComplete((status, throwable) -> {
+					boolean held = false;
+					try {
+						if (throwable == null && status.online()) {
+							// Server is online, let the player connect
+							return;
+						}
 
-		// Route player to fallback and start server
-		for (String serverName : plugin.getProxy().getConfiguration().getAttemptConnectionOrder()) {
-			Optional<RegisteredServer> fallbackServer = plugin.getProxy().getServer(serverName);
-			if (fallbackServer.isPresent() && fallbackServer.get() != targetServer) {
-				event.setInitialServer(fallbackServer.get());
-				break;
+						if (plugin.getSettings().fallback().hold()) {
+							holdPlayer(event, targetServer, continuation);
+							held = true;
+							return;
+						}
+
+						// Route player to fallback and start server
+						RegisteredServer fallbackServer = plugin.getFallbackSelector().select(event.getPlayer().getUniqueId(), targetServer);
+						if (fallbackServer != null) {
+							event.setInitialServer(fallbackServer);
+						}
+
+						// Trigger server start and checker
+						plugin.startServer(event.getPlayer(), targetServer);
+					} finally {
+						if (!held) {
+							continuation.resume();
+						}
+					}
+				}));
+	}
+
+	/**
+	 * Keep the player on the proxy until the server is online so that they directly connect to it
+	 */
+	private void holdPlayer(PlayerChooseInitialServerEvent event, RegisteredServer targetServer, Continuation continuation) {
+		Player player = event.getPlayer();
+		plugin.holdPlayer(player, targetServer).whenComplete((started, throwable) -> {
+			try {
+				if (throwable == null && started) {
+					// The initial server is still the target server
+					return;
+				}
+				if (!player.isActive()) {
+					return;
+				}
+				RegisteredServer fallbackServer = plugin.getFallbackSelector().select(player.getUniqueId(), targetServer);
+				if (fallbackServer != null) {
+					// The start task moves the player once the server is online
+					event.setInitialServer(fallbackServer);
+				} else {
+					plugin.cancelServerTask(player.getUniqueId());
+					player.disconnect(plugin.getTranslation(player, "server-starting.still-starting",
+							"server", targetServer.getServerInfo().getName()));
+				}
+			} finally {
+				continuation.resume();
 			}
-		}
+		});
+	}
 
-		// Trigger server start and checker
-		plugin.startServer(event.getPlayer(), targetServer);
+	@Subscribe
+	public void onServerPreConnect(ServerPreConnectEvent event) {
+		if (event.getPlayer().getCurrentServer().isPresent()) {
+			// Initial joins are already recorded when selecting the initial server
+			plugin.getJoinHistory().record(event.getOriginalServer().getServerInfo().getName(), ZonedDateTime.now());
+		}
 	}
 
 	@Subscribe
 	public void onPlayerQuit(DisconnectEvent event) {
 		plugin.cancelServerTask(event.getPlayer().getUniqueId());
+		plugin.getIdleShutdown().onDisconnect(event.getPlayer().getUniqueId());
+		plugin.getFallbackSelector().remove(event.getPlayer().getUniqueId());
 	}
 
 	@Subscribe
 	public void onServerSwitch(ServerConnectedEvent event) {
-		if (event.getPreviousServer().isPresent()
-				&& plugin.getProxy().getConfiguration().getAttemptConnectionOrder().contains(
-						event.getPreviousServer().get().getServerInfo().getName())) {
+		plugin.getIdleShutdown().onConnect(event.getPlayer().getUniqueId(), event.getServer().getServerInfo().getName());
+		plugin.getFallbackSelector().remove(event.getPlayer().getUniqueId());
+		// Players wait on the server they joined first, switching from it to any other server than the one
+		// they are waiting for means they moved on purpose, no matter if it was a per-server fallback or not
+		String waitingFor = plugin.getWaitingFor(event.getPlayer().getUniqueId());
+		if (waitingFor != null && event.getPreviousServer().isPresent()
+				&& !waitingFor.equals(event.getServer().getServerInfo().getName())) {
 			plugin.cancelServerTask(event.getPlayer().getUniqueId());
 		}
 	}
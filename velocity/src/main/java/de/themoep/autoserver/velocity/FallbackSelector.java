@@ -0,0 +1,121 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selects the server that players get sent to while the server they want to join is starting
+ */
+public class FallbackSelector {
+	private final AutoServer plugin;
+	// Players that got routed to a fallback but aren't connected to it yet
+	private final Map<UUID, String> routedPlayers = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> routedCounts = new ConcurrentHashMap<>();
+
+	public FallbackSelector(AutoServer plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Select a fallback server for a player. Servers which are known to be offline or full are skipped
+	 * unless no other fallback is left. With load aware selection the server with the least players
+	 * relative to its weight is chosen, otherwise the first usable one.
+	 * @param playerId The player to select the fallback for
+	 * @param target   The server that the player wanted to join
+	 * @return The fallback server or <code>null</code> if there is none
+	 */
+	public RegisteredServer select(UUID playerId, RegisteredServer target) {
+		Settings settings = plugin.getSettings();
+		List<String> fallbacks = settings.getServer(target.getServerInfo().getName()).fallbacks();
+		if (fallbacks.isEmpty()) {
+			fallbacks = plugin.getProxy().getConfiguration().getAttemptConnectionOrder();
+		}
+
+		RegisteredServer selected = null;
+		double selectedLoad = Double.MAX_VALUE;
+		RegisteredServer lastResort = null;
+		for (String serverName : fallbacks) {
+			Optional<RegisteredServer> server = plugin.getProxy().getServer(serverName);
+			if (server.isEmpty() || server.get() == target) {
+				continue;
+			}
+			ServerStatus status = plugin.getStatusCache().getCachedStatus(server.get());
+			if (status == null) {
+				// Refresh the status in the background and decide based on the last known one for now
+				plugin.getStatusCache().getStatus(server.get());
+				status = plugin.getStatusCache().getLastStatus(server.get());
+			}
+			int players = server.get().getPlayersConnected().size() + getRoutedCount(serverName);
+			if (status != null && (!status.online() || (status.maxPlayers() > 0 && players >= status.maxPlayers()))) {
+				if (lastResort == null) {
+					lastResort = server.get();
+				}
+				continue;
+			}
+			if (!settings.fallback().loadAware()) {
+				selected = server.get();
+				break;
+			}
+			double load = players / settings.getServer(serverName).weight();
+			if (load < selectedLoad) {
+				selected = server.get();
+				selectedLoad = load;
+			}
+		}
+		if (selected == null) {
+			selected = lastResort;
+		}
+		if (selected != null) {
+			route(playerId, selected.getServerInfo().getName());
+		}
+		return selected;
+	}
+
+	private int getRoutedCount(String serverName) {
+		AtomicInteger count = routedCounts.get(serverName);
+		return count != null ? count.get() : 0;
+	}
+
+	private void route(UUID playerId, String serverName) {
+		routedCounts.computeIfAbsent(serverName, n -> new AtomicInteger()).incrementAndGet();
+		String previous = routedPlayers.put(playerId, serverName);
+		if (previous != null) {
+			routedCounts.get(previous).decrementAndGet();
+		}
+	}
+
+	/**
+	 * Stop counting a player as routed to a fallback, e.g. because they connected to a server or left
+	 * @param playerId The player
+	 */
+	public void remove(UUID playerId) {
+		String serverName = routedPlayers.remove(playerId);
+		if (serverName != null) {
+			routedCounts.get(serverName).decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.logging.Level;
+
+public class HttpEndpoint {
+	private final AutoServer plugin;
+	private HttpServer server;
+
+	public HttpEndpoint(AutoServer plugin) {
+		this.plugin = plugin;
+	}
+
+	public void start(String address, int port, String readyToken) {
+		stop();
+		try {
+			server = HttpServer.create(new InetSocketAddress(address, port), 0);
+			server.createContext("/metrics", this::handleMetrics);
+			if (readyToken != null && !readyToken.isEmpty()) {
+				server.createContext("/ready", exchange -> handleReady(exchange, readyToken));
+			}
+			server.start();
+			plugin.log(Level.INFO, "Started HTTP endpoint on " + address + ":" + port);
+		} catch (IOException e) {
+			plugin.log(Level.SEVERE, "Unable to start HTTP endpoint on " + address + ":" + port, e);
+			server = null;
+		}
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			server = null;
+		}
+	}
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		if (!"GET".equals(exchange.getRequestMethod())) {
+			respond(exchange, 405, "Method not allowed");
+			return;
+		}
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		respond(exchange, 200, plugin.getMetrics().toPrometheus(plugin.getWaitingPlayerCounts()));
+	}
+
+	private void handleReady(HttpExchange exchange, String readyToken) throws IOException {
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			respond(exchange, 405, "Method not allowed");
+			return;
+		}
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorization == null || !MessageDigest.isEqual(
+				authorization.getBytes(StandardCharsets.UTF_8),
+				("Bearer " + readyToken).getBytes(StandardCharsets.UTF_8))) {
+			respond(exchange, 403, "Forbidden");
+			return;
+		}
+		String serverName = getQueryParameter(exchange.getRequestURI().getRawQuery(), "server");
+		if (serverName == null || !plugin.onServerReady(serverName)) {
+			respond(exchange, 404, "Unknown server");
+			return;
+		}
+		respond(exchange, 200, "OK");
+	}
+
+	private static String getQueryParameter(String query, String name) {
+		if (query == null) {
+			return null;
+		}
+		for (String parameter : query.split("&")) {
+			int index = parameter.indexOf('=');
+			if (index > 0 && parameter.substring(0, index).equals(name)) {
+				return URLDecoder.decode(parameter.substring(index + 1), StandardCharsets.UTF_8);
+			}
+		}
+		return null;
+	}
+
+	private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(code, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+public class IdleShutdown {
+	private final AutoServer plugin;
+	private final Map<UUID, String> playerServers = new ConcurrentHashMap<>();
+	private final Map<String, AtomicInteger> playerCounts = new ConcurrentHashMap<>();
+	private final Map<String, Long> idleSince = new ConcurrentHashMap<>();
+	private final Set<String> stopping = ConcurrentHashMap.newKeySet();
+	private ScheduledTask task;
+
+	public IdleShutdown(AutoServer plugin) {
+		this.plugin = plugin;
+	}
+
+	public void start() {
+		stop();
+		task = plugin.getProxy().getScheduler().buildTask(plugin, this::check)
+				.delay(10, TimeUnit.SECONDS)
+				.repeat(10, TimeUnit.SECONDS)
+				.schedule();
+	}
+
+	public void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+
+	void onConnect(UUID playerId, String serverName) {
+		String previous = playerServers.put(playerId, serverName);
+		if (previous != null) {
+			decrement(previous);
+		}
+		playerCounts.computeIfAbsent(serverName, n -> new AtomicInteger()).incrementAndGet();
+		idleSince.remove(serverName);
+	}
+
+	void onDisconnect(UUID playerId) {
+		String previous = playerServers.remove(playerId);
+		if (previous != null) {
+			decrement(previous);
+		}
+	}
+
+	private void decrement(String serverName) {
+		AtomicInteger count = playerCounts.get(serverName);
+		if (count != null && count.decrementAndGet() <= 0) {
+			idleSince.put(serverName, System.currentTimeMillis());
+		}
+	}
+
+	public int getPlayerCount(String serverName) {
+		AtomicInteger count = playerCounts.get(serverName);
+		return count != null ? Math.max(0, count.get()) : 0;
+	}
+
+	private void check() {
+		Settings settings = plugin.getSettings();
+		if (!settings.idleShutdown().enabled()) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, ServerSettings> entry : settings.servers().entrySet()) {
+			String serverName = entry.getKey();
+			RconSettings rcon = entry.getValue().rcon();
+			if (rcon == null) {
+				continue;
+			}
+			RegisteredServer server = plugin.getProxy().getServer(serverName).orElse(null);
+			if (server == null || getPlayerCount(serverName) > 0 || plugin.isStarting(serverName)) {
+				continue;
+			}
+			ServerStatus status = plugin.getStatusCache().getLastStatus(server);
+			if (status == null || !status.online()) {
+				// Only shut down servers that are known to be online
+				plugin.getStatusCache().getStatus(server);
+				continue;
+			}
+			long since = idleSince.computeIfAbsent(serverName, n -> now);
+			if (now - since < settings.idleShutdown().idleTime() * 1000L) {
+				continue;
+			}
+
+			if (!stopping.add(serverName)) {
+				// The previous stop of this server is still running
+				continue;
+			}
+			idleSince.put(serverName, now);
+			plugin.log(Level.INFO, "Stopping server " + serverName + " as it was empty for " + (now - since) / 1000 + " seconds");
+			// RCON blocks until the server answered or timed out, so every server gets its own task
+			String command = settings.idleShutdown().command();
+			int timeout = entry.getValue().pingTimeout() * 1000;
+			plugin.getProxy().getScheduler().buildTask(plugin, () -> stopServer(serverName, server, rcon, command, timeout)).schedule();
+		}
+	}
+
+	private void stopServer(String serverName, RegisteredServer server, RconSettings rcon, String command, int timeout) {
+		try {
+			InetSocketAddress address = new InetSocketAddress(server.getServerInfo().getAddress().getHostString(), rcon.port());
+			RconClient.sendCommand(address, rcon.password(), command, timeout);
+			plugin.getStatusCache().invalidate(serverName);
+			plugin.getServerState(serverName).setOffline();
+		} catch (IOException e) {
+			plugin.log(Level.WARNING, "Unable to stop server " + serverName + " via RCON: " + e.getMessage());
+		} finally {
+			stopping.remove(serverName);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Counts join attempts per server for every hour of the week. Older weeks lose half their weight every week.
+ */
+public class JoinHistory {
+	private static final int FILE_VERSION = 1;
+	private static final int BUCKETS = 7 * 24;
+	private static final double WEEKLY_DECAY = 0.5;
+
+	private final Path file;
+	private final Map<String, Entry> entries = new HashMap<>();
+	private boolean dirty = false;
+
+	public JoinHistory(Path file) {
+		this.file = file;
+	}
+
+	public synchronized void record(String serverName, ZonedDateTime time) {
+		entries.computeIfAbsent(serverName, n -> new Entry()).record(getBucket(time), getWeek(time));
+		dirty = true;
+	}
+
+	/**
+	 * Get how many join attempts are expected for a server in the hour of the week of a certain time
+	 * @param serverName The name of the server
+	 * @param time The time to get the expected joins for
+	 * @return The average amount of join attempts in that hour of the week
+	 */
+	public synchronized double getExpectedJoins(String serverName, ZonedDateTime time) {
+		Entry entry = entries.get(serverName);
+		if (entry == null) {
+			return 0;
+		}
+		return entry.getScore(getBucket(time), getWeek(time)) * (1 - WEEKLY_DECAY);
+	}
+
+	public synchronized void load() throws IOException {
+		entries.clear();
+		if (!Files.exists(file)) {
+			return;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			int version = in.readInt();
+			if (version != FILE_VERSION) {
+				throw new IOException("Unsupported join history version " + version);
+			}
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String serverName = in.readUTF();
+				Entry entry = new Entry();
+				for (int b = 0; b < BUCKETS; b++) {
+					entry.scores[b] = in.readFloat();
+					entry.weeks[b] = in.readInt();
+				}
+				entries.put(serverName, entry);
+			}
+		}
+		dirty = false;
+	}
+
+	public synchronized void save() throws IOException {
+		if (!dirty) {
+			return;
+		}
+		Files.createDirectories(file.getParent());
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			out.writeInt(FILE_VERSION);
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry> e : entries.entrySet()) {
+				out.writeUTF(e.getKey());
+				for (int b = 0; b < BUCKETS; b++) {
+					out.writeFloat(e.getValue().scores[b]);
+					out.writeInt(e.getValue().weeks[b]);
+				}
+			}
+		}
+		Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		dirty = false;
+	}
+
+	private static int getBucket(ZonedDateTime time) {
+		return (time.getDayOfWeek().getValue() - 1) * 24 + time.getHour();
+	}
+
+	private static int getWeek(ZonedDateTime time) {
+		return (int) (time.toLocalDate().toEpochDay() / 7);
+	}
+
+	private static class Entry {
+		private final float[] scores = new float[BUCKETS];
+		private final int[] weeks = new int[BUCKETS];
+
+		private float getScore(int bucket, int week) {
+			return (float) (scores[bucket] * Math.pow(WEEKLY_DECAY, Math.max(0, week - weeks[bucket])));
+		}
+
+		private void record(int bucket, int week) {
+			scores[bucket] = getScore(bucket, week) + 1;
+			weeks[bucket] = week;
+		}
+	}
+}
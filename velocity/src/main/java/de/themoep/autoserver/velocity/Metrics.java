@@ -0,0 +1,195 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+public class Metrics {
+	private static final long[] BUCKETS = {5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000, 60000, 120000, 300000};
+
+	private final Map<String, Histogram> wakeDurations = new ConcurrentHashMap<>();
+	private final Map<String, Histogram> startRequestDurations = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> startRequestFailures = new ConcurrentHashMap<>();
+	private final Map<String, Histogram> pingDurations = new ConcurrentHashMap<>();
+	private final Map<String, LongAdder> pingFailures = new ConcurrentHashMap<>();
+
+	public void recordWake(String serverName, long millis) {
+		wakeDurations.computeIfAbsent(serverName, n -> new Histogram()).record(millis);
+	}
+
+	public void recordStartRequest(String serverName, long millis, boolean success) {
+		if (success) {
+			startRequestDurations.computeIfAbsent(serverName, n -> new Histogram()).record(millis);
+		} else {
+			startRequestFailures.computeIfAbsent(serverName, n -> new LongAdder()).increment();
+		}
+	}
+
+	public void recordPing(String serverName, long millis, boolean success) {
+		if (success) {
+			pingDurations.computeIfAbsent(serverName, n -> new Histogram()).record(millis);
+		} else {
+			pingFailures.computeIfAbsent(serverName, n -> new LongAdder()).increment();
+		}
+	}
+
+	public Histogram getWakeDurations(String serverName) {
+		return wakeDurations.get(serverName);
+	}
+
+	public Histogram getStartRequestDurations(String serverName) {
+		return startRequestDurations.get(serverName);
+	}
+
+	public long getStartRequestFailures(String serverName) {
+		LongAdder failures = startRequestFailures.get(serverName);
+		return failures != null ? failures.sum() : 0;
+	}
+
+	public Histogram getPingDurations(String serverName) {
+		return pingDurations.get(serverName);
+	}
+
+	public long getPingFailures(String serverName) {
+		LongAdder failures = pingFailures.get(serverName);
+		return failures != null ? failures.sum() : 0;
+	}
+
+	/**
+	 * Get the names of all servers that have any recorded data
+	 * @return The server names, sorted alphabetically
+	 */
+	public Set<String> getServerNames() {
+		Set<String> names = new TreeSet<>();
+		names.addAll(wakeDurations.keySet());
+		names.addAll(startRequestDurations.keySet());
+		names.addAll(startRequestFailures.keySet());
+		names.addAll(pingDurations.keySet());
+		names.addAll(pingFailures.keySet());
+		return names;
+	}
+
+	/**
+	 * Render all metrics in the Prometheus text exposition format
+	 * @param waitingPlayers The current amount of waiting players per server
+	 * @return The metrics as text
+	 */
+	public String toPrometheus(Map<String, Integer> waitingPlayers) {
+		StringBuilder sb = new StringBuilder();
+		appendHistogram(sb, "autoserver_wake_duration_seconds", "Time from the first join attempt to a successful connect", wakeDurations);
+		appendHistogram(sb, "autoserver_start_request_duration_seconds", "Duration of successful start requests", startRequestDurations);
+		appendCounter(sb, "autoserver_start_request_failures_total", "Start requests that failed after all retries", startRequestFailures);
+		appendHistogram(sb, "autoserver_ping_duration_seconds", "Round trip time of successful pings", pingDurations);
+		appendCounter(sb, "autoserver_ping_failures_total", "Pings that failed or timed out", pingFailures);
+		sb.append("# HELP autoserver_waiting_players Players currently waiting for a server to start\n");
+		sb.append("# TYPE autoserver_waiting_players gauge\n");
+		for (Map.Entry<String, Integer> entry : waitingPlayers.entrySet()) {
+			sb.append("autoserver_waiting_players{server=\"").append(escape(entry.getKey())).append("\"} ").append(entry.getValue()).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static void appendHistogram(StringBuilder sb, String name, String help, Map<String, Histogram> histograms) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(" histogram\n");
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			String server = escape(entry.getKey());
+			Histogram histogram = entry.getValue();
+			long cumulative = 0;
+			for (int i = 0; i < BUCKETS.length; i++) {
+				cumulative += histogram.buckets[i].sum();
+				sb.append(name).append("_bucket{server=\"").append(server).append("\",le=\"").append(toSeconds(BUCKETS[i])).append("\"} ").append(cumulative).append('\n');
+			}
+			sb.append(name).append("_bucket{server=\"").append(server).append("\",le=\"+Inf\"} ").append(histogram.getCount()).append('\n');
+			sb.append(name).append("_sum{server=\"").append(server).append("\"} ").append(toSeconds(histogram.sum.sum())).append('\n');
+			sb.append(name).append("_count{server=\"").append(server).append("\"} ").append(histogram.getCount()).append('\n');
+		}
+	}
+
+	private static void appendCounter(StringBuilder sb, String name, String help, Map<String, LongAdder> counters) {
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+		sb.append("# TYPE ").append(name).append(" counter\n");
+		for (Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+			sb.append(name).append("{server=\"").append(escape(entry.getKey())).append("\"} ").append(entry.getValue().sum()).append('\n');
+		}
+	}
+
+	private static String toSeconds(long millis) {
+		return String.format(Locale.ROOT, "%.3f", millis / 1000.0);
+	}
+
+	private static String escape(String label) {
+		return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	public static class Histogram {
+		private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+		private final LongAdder sum = new LongAdder();
+
+		private Histogram() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		private void record(long millis) {
+			int i = 0;
+			while (i < BUCKETS.length && millis > BUCKETS[i]) {
+				i++;
+			}
+			buckets[i].increment();
+			sum.add(millis);
+		}
+
+		public long getCount() {
+			long count = 0;
+			for (LongAdder bucket : buckets) {
+				count += bucket.sum();
+			}
+			return count;
+		}
+
+		public long getAverage() {
+			long count = getCount();
+			return count > 0 ? sum.sum() / count : 0;
+		}
+
+		/**
+		 * Estimate a quantile by the upper bound of the bucket it falls into
+		 * @param quantile The quantile between 0 and 1
+		 * @return The upper bound in milliseconds or -1 if it is above the biggest bucket
+		 */
+		public long getQuantile(double quantile) {
+			long target = (long) Math.ceil(getCount() * quantile);
+			long cumulative = 0;
+			for (int i = 0; i < BUCKETS.length; i++) {
+				cumulative += buckets[i].sum();
+				if (cumulative >= target) {
+					return BUCKETS[i];
+				}
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+
+import java.io.IOException;
+import java.time.ZonedDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+public class Prewarmer {
+	private final AutoServer plugin;
+	private final JoinHistory history;
+	private final Map<String, Integer> lastPrewarmHour = new ConcurrentHashMap<>();
+	private ScheduledTask task;
+
+	public Prewarmer(AutoServer plugin, JoinHistory history) {
+		this.plugin = plugin;
+		this.history = history;
+	}
+
+	public void start() {
+		stop();
+		task = plugin.getProxy().getScheduler().buildTask(plugin, this::run)
+				.delay(1, TimeUnit.MINUTES)
+				.repeat(1, TimeUnit.MINUTES)
+				.schedule();
+	}
+
+	public void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+
+	private void run() {
+		Settings settings = plugin.getSettings();
+		if (settings.prewarm().enabled()) {
+			ZonedDateTime expectedTime = ZonedDateTime.now().plusMinutes(settings.prewarm().leadTime());
+			int hour = (int) (expectedTime.toEpochSecond() / 3600);
+			for (RegisteredServer server : plugin.getProxy().getAllServers()) {
+				String serverName = server.getServerInfo().getName();
+				if (history.getExpectedJoins(serverName, expectedTime) < settings.prewarm().threshold()) {
+					continue;
+				}
+				Integer lastHour = lastPrewarmHour.get(serverName);
+				if (lastHour != null && lastHour == hour) {
+					// Only try once per hour so that servers which were stopped in the meantime don't get restarted all the time
+					continue;
+				}
+				plugin.getStatusCache().getStatus(server).thenAccept(status -> {
+					if (!status.online()) {
+						lastPrewarmHour.put(serverName, hour);
+						plugin.log(Level.INFO, "Prewarming server " + serverName + " as players are expected to join it soon");
+						plugin.sendStartRequest(server);
+					}
+				});
+			}
+		}
+
+		try {
+			history.save();
+		} catch (IOException e) {
+			plugin.log(Level.SEVERE, "Unable to save join history", e);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+public class RconClient {
+	private static final int TYPE_RESPONSE = 0;
+	private static final int TYPE_COMMAND = 2;
+	private static final int TYPE_LOGIN = 3;
+	private static final int MAX_PACKET_LENGTH = 4110;
+
+	private RconClient() {}
+
+	/**
+	 * Send a single command to a server via RCON. This blocks until the response was received!
+	 * @param address The RCON address of the server
+	 * @param password The RCON password
+	 * @param command The command to send
+	 * @param timeout The timeout for connecting and every read in milliseconds
+	 * @return The response of the server or an empty string if the server closed the connection after receiving the command
+	 * @throws IOException If the connection failed or the password was wrong
+	 */
+	public static String sendCommand(InetSocketAddress address, String password, String command, int timeout) throws IOException {
+		try (Socket socket = new Socket()) {
+			socket.connect(address, timeout);
+			socket.setSoTimeout(timeout);
+			OutputStream out = socket.getOutputStream();
+			InputStream in = socket.getInputStream();
+
+			write(out, 1, TYPE_LOGIN, password);
+			if (read(in).requestId == -1) {
+				throw new IOException("RCON authentication failed");
+			}
+
+			write(out, 2, TYPE_COMMAND, command);
+			Packet response;
+			try {
+				response = read(in);
+			} catch (EOFException e) {
+				// Commands like stop can shut the server down before it answers, the command was still delivered
+				return "";
+			}
+			if (response.type != TYPE_RESPONSE) {
+				throw new IOException("Unexpected RCON packet type " + response.type);
+			}
+			return response.payload;
+		}
+	}
+
+	private static void write(OutputStream out, int requestId, int type, String payload) throws IOException {
+		byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.allocate(14 + payloadBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(10 + payloadBytes.length);
+		buffer.putInt(requestId);
+		buffer.putInt(type);
+		buffer.put(payloadBytes);
+		buffer.put((byte) 0);
+		buffer.put((byte) 0);
+		out.write(buffer.array());
+		out.flush();
+	}
+
+	private static Packet read(InputStream in) throws IOException {
+		byte[] lengthBytes = new byte[4];
+		readFully(in, lengthBytes);
+		int length = ByteBuffer.wrap(lengthBytes).order(ByteOrder.LITTLE_ENDIAN).getInt();
+		if (length < 10 || length > MAX_PACKET_LENGTH) {
+			throw new IOException("Invalid RCON packet length " + length);
+		}
+		byte[] data = new byte[length];
+		readFully(in, data);
+		ByteBuffer buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN);
+		int requestId = buffer.getInt();
+		int type = buffer.getInt();
+		String payload = new String(data, 8, length - 10, StandardCharsets.UTF_8);
+		return new Packet(requestId, type, payload);
+	}
+
+	private static void readFully(InputStream in, byte[] bytes) throws IOException {
+		int read = 0;
+		while (read < bytes.length) {
+			int r = in.read(bytes, read, bytes.length - read);
+			if (r == -1) {
+				throw new EOFException("RCON connection closed");
+			}
+			read += r;
+		}
+	}
+
+	private record Packet(int requestId, int type, String payload) {}
+}
@@ -0,0 +1,44 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.List;
+
+/**
+ * Settings of a single server, values which aren't set for the server come from the global settings
+ * @param pingTimeout  The ping timeout in seconds
+ * @param pingInterval The interval between pings of a starting server in seconds
+ * @param startTimeout After how many seconds a server that is still unreachable no longer counts as starting
+ * @param startUrl     The URL to send start requests to or <code>null</code> to use the server's address
+ * @param fallbacks    The servers to send players to while the server starts, empty to use the attempt connection order
+ * @param priority     Servers with a higher priority get started first when their host's start queue is full
+ * @param weight       How much load the server can take relative to others when it is used as a fallback
+ * @param rcon         The RCON settings or <code>null</code> if the server has none
+ */
+public record ServerSettings(
+		int pingTimeout,
+		int pingInterval,
+		int startTimeout,
+		String startUrl,
+		List<String> fallbacks,
+		int priority,
+		double weight,
+		RconSettings rcon
+) {
+}
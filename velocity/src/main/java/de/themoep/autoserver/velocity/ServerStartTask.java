@@ -0,0 +1,260 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import de.themoep.minedown.adventure.MineDown;
+import de.themoep.utils.lang.LanguageConfig;
+import net.kyori.adventure.title.Title;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+public class ServerStartTask {
+	private final AutoServer plugin;
+	private final RegisteredServer server;
+	private final Map<UUID, Long> waitingPlayers = new ConcurrentHashMap<>();
+	// Players that are still choosing their initial server, the proxy connects them itself if their hold completes with true
+	private final Map<UUID, CompletableFuture<Boolean>> heldPlayers = new ConcurrentHashMap<>();
+	private volatile ScheduledTask task;
+	private volatile boolean cancelled = false;
+	private final AtomicBoolean completed = new AtomicBoolean(false);
+	private final AtomicInteger pollGeneration = new AtomicInteger();
+
+	public ServerStartTask(AutoServer plugin, RegisteredServer server) {
+		this.plugin = plugin;
+		this.server = server;
+		schedule(1000);
+	}
+
+	private void schedule(long delay) {
+		task = plugin.getProxy().getScheduler().buildTask(plugin, this::poll)
+				.delay(delay, TimeUnit.MILLISECONDS)
+				.schedule();
+		if (cancelled) {
+			task.cancel();
+		}
+	}
+
+	/**
+	 * Ping the server right away instead of waiting for the next scheduled ping
+	 */
+	void pollNow() {
+		task.cancel();
+		poll();
+	}
+
+	private void poll() {
+		int generation = pollGeneration.incrementAndGet();
+		plugin.getStatusCache().ping(server).thenAccept(status -> {
+			if (status.online()) {
+				if (completed.compareAndSet(false, true)) {
+					Set<UUID> connecting = new HashSet<>();
+					for (Map.Entry<UUID, CompletableFuture<Boolean>> held : heldPlayers.entrySet()) {
+						if (completeHold(held.getKey(), held.getValue(), true)) {
+							connecting.add(held.getKey());
+							Long waitingSince = waitingPlayers.get(held.getKey());
+							if (waitingSince != null) {
+								plugin.getMetrics().recordWake(getServerName(), System.currentTimeMillis() - waitingSince);
+							}
+						}
+					}
+					plugin.completeServerStart(this);
+					connectAll(connecting);
+				}
+			} else if (!cancelled && generation == pollGeneration.get()) {
+				// Server is offline
+				long delay = plugin.getSettings().getServer(getServerName()).pingInterval() * 1000L;
+				try {
+					delay = plugin.getNextPingDelay(getServerName());
+					long titleDelay = delay;
+					int position = plugin.getStartQueue().getPosition(getServerName());
+					// Everyone waiting with the same language sees the same title
+					Map<LanguageConfig<?>, Title> titles = new HashMap<>();
+					for (UUID playerId : waitingPlayers.keySet()) {
+						if (heldPlayers.containsKey(playerId)) {
+							continue;
+						}
+						plugin.getProxy().getPlayer(playerId).ifPresent(player -> player.showTitle(
+								titles.computeIfAbsent(plugin.getLanguageConfig(player), config -> createTitle(config, position, titleDelay))));
+					}
+				} catch (RuntimeException e) {
+					plugin.log(Level.SEVERE, "Error while updating the players waiting for server " + getServerName(), e);
+				} finally {
+					// The next poll is only scheduled from here so it has to happen even if updating the players failed
+					if (!cancelled) {
+						schedule(delay);
+					}
+				}
+			}
+		}).exceptionally(throwable -> {
+			plugin.log(Level.SEVERE, "Error while checking if server " + getServerName() + " is online", throwable);
+			return null;
+		});
+	}
+
+	/**
+	 * @param connecting Players that the proxy already connects to the server as their initial server
+	 */
+	private void connectAll(Set<UUID> connecting) {
+		List<UUID> players = new ArrayList<>(waitingPlayers.keySet());
+		players.removeAll(connecting);
+		Settings settings = plugin.getSettings();
+		int batchSize = settings.connectBatch().size();
+		if (batchSize <= 0) {
+			batchSize = players.size();
+		}
+		for (int i = 0; i * batchSize < players.size(); i++) {
+			List<UUID> batch = players.subList(i * batchSize, Math.min((i + 1) * batchSize, players.size()));
+			if (i == 0) {
+				connect(batch);
+			} else {
+				// Spread the logins so that the freshly started server doesn't get them all in the same tick
+				plugin.getProxy().getScheduler().buildTask(plugin, () -> connect(batch))
+						.delay((long) i * settings.connectBatch().interval(), TimeUnit.MILLISECONDS)
+						.schedule();
+			}
+		}
+	}
+
+	private void connect(List<UUID> playerIds) {
+		for (UUID playerId : playerIds) {
+			plugin.getProxy().getPlayer(playerId).ifPresent(this::connect);
+		}
+	}
+
+	private void connect(Player player) {
+		player.createConnectionRequest(server).connect().whenComplete((result, throwable) -> {
+			if (throwable != null) {
+				plugin.log(Level.SEVERE, "Failed to connect player to server " + getServerName(), throwable);
+				return;
+			}
+			if (result.isSuccessful()) {
+				plugin.log(Level.INFO, "Connected player " + player.getUsername() + " to server " + getServerName());
+				Long waitingSince = waitingPlayers.get(player.getUniqueId());
+				if (waitingSince != null) {
+					plugin.getMetrics().recordWake(getServerName(), System.currentTimeMillis() - waitingSince);
+				}
+			} else {
+				plugin.log(Level.WARNING, "Failed to connect player " + player.getUsername() + " to server " + getServerName()
+						+ ": " + result.getReasonComponent().map(MineDown::stringify).orElse("Unknown reason"));
+				player.disconnect(result.getReasonComponent()
+						.orElse(plugin.getTranslation(player, "server-starting.error", "server", getServerName())));
+			}
+		});
+	}
+
+	private Title createTitle(LanguageConfig<?> config, int position, long delay) {
+		return Title.title(
+				plugin.getCachedTranslation(config, "server-starting.title", "server", getServerName()),
+				position > 0
+						? plugin.getCachedTranslation(config, "server-starting.queued", "server", getServerName(), "position", String.valueOf(position))
+						: plugin.getCachedTranslation(config, "server-starting.subtitle", "server", getServerName()),
+				Title.Times.times(Duration.ZERO, Duration.ofMillis(delay + 1000), Duration.ZERO)
+		);
+	}
+
+	void addPlayer(UUID playerId) {
+		waitingPlayers.putIfAbsent(playerId, System.currentTimeMillis());
+	}
+
+	/**
+	 * Hold a waiting player that is still choosing their initial server
+	 * @param playerId The ID of the player
+	 * @param timeout  How long to hold the player at most, in seconds
+	 * @return A future that completes with <code>true</code> if the player can connect to the server directly or with
+	 * <code>false</code> if they need to go somewhere else. In that case they are a regular waiting player from then on.
+	 */
+	CompletableFuture<Boolean> hold(UUID playerId, int timeout) {
+		CompletableFuture<Boolean> hold = new CompletableFuture<>();
+		CompletableFuture<Boolean> previous = heldPlayers.put(playerId, hold);
+		if (previous != null) {
+			previous.complete(false);
+		}
+		ScheduledTask timeoutTask = plugin.getProxy().getScheduler()
+				.buildTask(plugin, () -> completeHold(playerId, hold, false))
+				.delay(timeout, TimeUnit.SECONDS)
+				.schedule();
+		hold.thenRun(timeoutTask::cancel);
+		return hold;
+	}
+
+	/**
+	 * Complete the hold of a player. Only the call which removes the hold completes it so the start and the timeout
+	 * can never both handle the same player.
+	 * @return Whether this call completed the hold
+	 */
+	private boolean completeHold(UUID playerId, CompletableFuture<Boolean> hold, boolean started) {
+		if (heldPlayers.remove(playerId, hold)) {
+			hold.complete(started);
+			return true;
+		}
+		return false;
+	}
+
+	void removePlayer(UUID playerId) {
+		waitingPlayers.remove(playerId);
+		CompletableFuture<Boolean> hold = heldPlayers.get(playerId);
+		if (hold != null) {
+			completeHold(playerId, hold, false);
+		}
+	}
+
+	boolean isEmpty() {
+		return waitingPlayers.isEmpty();
+	}
+
+	void cancel() {
+		cancelled = true;
+		task.cancel();
+		for (Map.Entry<UUID, CompletableFuture<Boolean>> held : heldPlayers.entrySet()) {
+			completeHold(held.getKey(), held.getValue(), false);
+		}
+	}
+
+	boolean isClosed() {
+		return cancelled;
+	}
+
+	public RegisteredServer getServer() {
+		return server;
+	}
+
+	public String getServerName() {
+		return server.getServerInfo().getName();
+	}
+
+	public Set<UUID> getWaitingPlayers() {
+		return waitingPlayers.keySet();
+	}
+}
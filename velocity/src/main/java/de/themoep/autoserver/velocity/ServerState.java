@@ -0,0 +1,115 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The wake state of a single server. All transitions are atomic so that concurrent joins can't start a server twice.
+ */
+public class ServerState {
+	private final String serverName;
+	private final AtomicReference<Snapshot> state = new AtomicReference<>(new Snapshot(WakeState.OFFLINE, 0));
+	private volatile long requestSentAt = -1;
+
+	public ServerState(String serverName) {
+		this.serverName = serverName;
+	}
+
+	/**
+	 * Try to move the server into the starting state
+	 * @param timeout Time in milliseconds after which a server that is still starting may be started again
+	 * @return Whether this call moved it into the starting state and the caller should start the server
+	 */
+	public boolean tryStart(long timeout) {
+		while (true) {
+			Snapshot current = state.get();
+			long now = System.currentTimeMillis();
+			if (current.state == WakeState.STARTING && now - current.since < timeout) {
+				return false;
+			}
+			if (state.compareAndSet(current, new Snapshot(WakeState.STARTING, now))) {
+				requestSentAt = -1;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Mark the server as online
+	 * @return The state it was in before
+	 */
+	public WakeState setOnline() {
+		return set(WakeState.ONLINE);
+	}
+
+	/**
+	 * Mark the server as offline
+	 * @return The state it was in before
+	 */
+	public WakeState setOffline() {
+		return set(WakeState.OFFLINE);
+	}
+
+	/**
+	 * Mark a server that is online as offline, e.g. because it stopped answering pings. Starting servers stay starting.
+	 * @return Whether the state changed
+	 */
+	public boolean setOfflineIfOnline() {
+		Snapshot current = state.get();
+		return current.state == WakeState.ONLINE && state.compareAndSet(current, new Snapshot(WakeState.OFFLINE, System.currentTimeMillis()));
+	}
+
+	private WakeState set(WakeState wakeState) {
+		Snapshot previous = state.get();
+		if (previous.state == wakeState) {
+			return wakeState;
+		}
+		previous = state.getAndSet(new Snapshot(wakeState, System.currentTimeMillis()));
+		return previous.state;
+	}
+
+	public WakeState getState() {
+		return state.get().state;
+	}
+
+	public long getStateSince() {
+		return state.get().since;
+	}
+
+	public String getServerName() {
+		return serverName;
+	}
+
+	public long getRequestSentAt() {
+		return requestSentAt;
+	}
+
+	public void setRequestSentAt(long requestSentAt) {
+		this.requestSentAt = requestSentAt;
+	}
+
+	private record Snapshot(WakeState state, long since) {}
+
+	public enum WakeState {
+		OFFLINE,
+		STARTING,
+		ONLINE
+	}
+}
@@ -0,0 +1,34 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+public record ServerStatus(boolean online, long rtt, int players, int maxPlayers, long timestamp) {
+
+	public static ServerStatus online(long rtt, int players, int maxPlayers) {
+		return new ServerStatus(true, rtt, players, maxPlayers, System.currentTimeMillis());
+	}
+
+	public static ServerStatus offline() {
+		return new ServerStatus(false, -1, 0, 0, System.currentTimeMillis());
+	}
+
+	public long getAge() {
+		return System.currentTimeMillis() - timestamp;
+	}
+}
@@ -0,0 +1,158 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.network.ProtocolVersion;
+import com.velocitypowered.api.proxy.server.PingOptions;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+public class ServerStatusCache {
+	private final AutoServer plugin;
+	private final Map<String, ServerStatus> statuses = new ConcurrentHashMap<>();
+	private final Map<String, CompletableFuture<ServerStatus>> pendingPings = new ConcurrentHashMap<>();
+
+	public ServerStatusCache(AutoServer plugin) {
+		this.plugin = plugin;
+	}
+
+	/**
+	 * Get the cached status of a server if it didn't expire yet
+	 * @param server The server to get the status for
+	 * @return The cached status or <code>null</code> if there is none or it expired
+	 */
+	public ServerStatus getCachedStatus(RegisteredServer server) {
+		ServerStatus status = statuses.get(server.getServerInfo().getName());
+		if (status != null && status.getAge() < getTtl(status)) {
+			return status;
+		}
+		return null;
+	}
+
+	/**
+	 * Get the last known status of a server regardless of its age
+	 * @param server The server to get the status for
+	 * @return The last status or <code>null</code> if the server was never pinged
+	 */
+	public ServerStatus getLastStatus(RegisteredServer server) {
+		return statuses.get(server.getServerInfo().getName());
+	}
+
+	/**
+	 * Get the status of a server, only pings the server if there is no valid cached status
+	 * @param server The server to get the status for
+	 * @return A future which is completed with the status
+	 */
+	public CompletableFuture<ServerStatus> getStatus(RegisteredServer server) {
+		return getStatus(server, null);
+	}
+
+	/**
+	 * Get the status of a server, only pings the server if there is no valid cached status
+	 * @param server  The server to get the status for
+	 * @param version The protocol version to ping with or <code>null</code> to use Velocity's default
+	 * @return A future which is completed with the status
+	 */
+	public CompletableFuture<ServerStatus> getStatus(RegisteredServer server, ProtocolVersion version) {
+		ServerStatus status = getCachedStatus(server);
+		if (status != null) {
+			return CompletableFuture.completedFuture(status);
+		}
+		return ping(server, version);
+	}
+
+	/**
+	 * Ping a server and update its cached status. Concurrent calls share the same ping.
+	 * @param server The server to ping
+	 * @return A future which is completed with the new status
+	 */
+	public CompletableFuture<ServerStatus> ping(RegisteredServer server) {
+		return ping(server, null);
+	}
+
+	/**
+	 * Ping a server and update its cached status. Concurrent calls with the same protocol version share the same ping.
+	 * @param server  The server to ping
+	 * @param version The protocol version to ping with or <code>null</code> to use Velocity's default
+	 * @return A future which is completed with the new status
+	 */
+	public CompletableFuture<ServerStatus> ping(RegisteredServer server, ProtocolVersion version) {
+		String serverName = server.getServerInfo().getName();
+		// Backends can reject versions they don't know so pings with different versions can't be shared
+		String pendingKey = version != null ? serverName + ":" + version.getProtocol() : serverName;
+		CompletableFuture<ServerStatus> future = new CompletableFuture<>();
+		CompletableFuture<ServerStatus> pending = pendingPings.putIfAbsent(pendingKey, future);
+		if (pending != null) {
+			return pending;
+		}
+
+		PingOptions.Builder options = PingOptions.builder()
+				.timeout(Duration.ofSeconds(plugin.getSettings().getServer(serverName).pingTimeout()));
+		if (version != null) {
+			options.version(version);
+		}
+		long start = System.nanoTime();
+		server.ping(options.build())
+				.whenComplete((ping, throwable) -> {
+					ServerStatus status = ServerStatus.offline();
+					try {
+						long rtt = (System.nanoTime() - start) / 1_000_000;
+						// A sleeping server's AutoServer application answers pings with a negative protocol version
+						if (throwable == null && ping != null && ping.getVersion().getProtocol() >= 0) {
+							status = ServerStatus.online(rtt,
+									ping.getPlayers().map(ServerPing.Players::getOnline).orElse(0),
+									ping.getPlayers().map(ServerPing.Players::getMax).orElse(0));
+						}
+						statuses.put(serverName, status);
+						plugin.getMetrics().recordPing(serverName, rtt, throwable == null && ping != null);
+						if (status.online()) {
+							plugin.onServerOnline(serverName);
+						} else {
+							plugin.onServerOffline(serverName);
+						}
+					} catch (RuntimeException e) {
+						plugin.log(Level.SEVERE, "Error while handling the ping result of server " + serverName, e);
+					} finally {
+						// Later pings of the server would get the pending future forever if it wasn't completed
+						pendingPings.remove(pendingKey, future);
+						future.complete(status);
+					}
+				});
+		return future;
+	}
+
+	public void invalidate(String serverName) {
+		statuses.remove(serverName);
+	}
+
+	public void clear() {
+		statuses.clear();
+	}
+
+	private long getTtl(ServerStatus status) {
+		Settings settings = plugin.getSettings();
+		return (status.online() ? settings.statusCache().onlineTtl() : settings.statusCache().offlineTtl()) * 1000L;
+	}
+}
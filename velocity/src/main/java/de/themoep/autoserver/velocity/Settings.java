@@ -0,0 +1,243 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.spongepowered.configurate.ConfigurationNode;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+/**
+ * Immutable snapshot of the plugin's configuration. It gets compiled once when the config is loaded
+ * so that reading settings doesn't have to walk the configuration tree.
+ */
+public record Settings(
+		String defaultLanguage,
+		AdaptivePing adaptivePing,
+		ConnectBatch connectBatch,
+		StatusCache statusCache,
+		StartRequest startRequest,
+		int maxStartsPerHost,
+		Fallback fallback,
+		HttpEndpoint httpEndpoint,
+		Prewarm prewarm,
+		IdleShutdown idleShutdown,
+		ServerSettings defaultServer,
+		Map<String, ServerSettings> servers
+) {
+
+	/**
+	 * @param minInterval The shortest time between two pings, in seconds
+	 */
+	public record AdaptivePing(boolean enabled, int minInterval) {}
+
+	/**
+	 * @param size     How many players get connected at once, 0 for all of them
+	 * @param interval The delay between two batches, in milliseconds
+	 */
+	public record ConnectBatch(int size, int interval) {}
+
+	/**
+	 * @param onlineTtl  How long an online status is reused, in seconds
+	 * @param offlineTtl How long an offline status is reused, in seconds
+	 */
+	public record StatusCache(int onlineTtl, int offlineTtl) {}
+
+	/**
+	 * @param connectTimeout The connect timeout, in seconds
+	 * @param requestTimeout The timeout of the whole request, in seconds
+	 * @param retryDelay     The delay before the first retry, in milliseconds
+	 */
+	public record StartRequest(int connectTimeout, int requestTimeout, int maxConcurrent, int retries, int retryDelay) {}
+
+	/**
+	 * @param hold        Whether to hold joining players on the proxy while their server starts
+	 * @param maxHoldTime How long a player gets held at most, in seconds
+	 */
+	public record Fallback(boolean loadAware, boolean hold, int maxHoldTime) {}
+
+	public record HttpEndpoint(boolean enabled, String address, int port, String readyToken) {}
+
+	/**
+	 * @param leadTime  How early servers get started, in minutes
+	 * @param threshold How many joins have to be expected to start a server
+	 */
+	public record Prewarm(boolean enabled, int leadTime, double threshold) {}
+
+	/**
+	 * @param idleTime How long a server has to be empty before it gets stopped, in seconds
+	 */
+	public record IdleShutdown(boolean enabled, int idleTime, String command) {}
+
+	/**
+	 * Get the settings of a server
+	 * @param serverName The name of the server
+	 * @return The server's own settings or the global ones if it has none
+	 */
+	public ServerSettings getServer(String serverName) {
+		return servers.getOrDefault(serverName, defaultServer);
+	}
+
+	/**
+	 * Compile the settings from a loaded config. Invalid values get replaced by their defaults.
+	 * @param plugin The plugin to log warnings with
+	 * @param config The loaded config
+	 * @return The settings
+	 */
+	static Settings compile(AutoServer plugin, PluginConfig config) {
+		double prewarmThreshold = config.getDouble("prewarm.threshold");
+		if (prewarmThreshold <= 0) {
+			plugin.log(Level.WARNING, "Invalid prewarm.threshold value in config! Using default value of 3.");
+			prewarmThreshold = 3;
+		}
+
+		ServerSettings defaultServer = new ServerSettings(
+				getInt(plugin, config, "pingTimeout", 1, 3, "seconds"),
+				getInt(plugin, config, "pingInterval", 1, 10, "seconds"),
+				getInt(plugin, config, "startQueue.startTimeout", 1, 180, "seconds"),
+				null,
+				List.of(),
+				0,
+				1,
+				null
+		);
+		// Index the servers by their name so that they can be looked up on every login without walking the config
+		Map<String, ServerSettings> servers = new HashMap<>();
+		for (Map.Entry<Object, ? extends ConfigurationNode> entry : config.getRawConfig("servers").childrenMap().entrySet()) {
+			String serverName = String.valueOf(entry.getKey());
+			servers.put(serverName, compileServer(plugin, serverName, entry.getValue(), defaultServer));
+		}
+
+		return new Settings(
+				config.getString("defaultLanguage"),
+				new AdaptivePing(
+						config.getBoolean("adaptivePing.enabled"),
+						getInt(plugin, config, "adaptivePing.minInterval", 1, 1, "second")),
+				new ConnectBatch(
+						Math.max(0, config.getInt("connectBatch.size")),
+						Math.max(0, config.getInt("connectBatch.interval"))),
+				new StatusCache(
+						getInt(plugin, config, "statusCache.onlineTtl", 0, 10, "seconds"),
+						getInt(plugin, config, "statusCache.offlineTtl", 0, 5, "seconds")),
+				new StartRequest(
+						Math.max(1, config.getInt("startRequest.connectTimeout")),
+						Math.max(1, config.getInt("startRequest.requestTimeout")),
+						Math.max(1, config.getInt("startRequest.maxConcurrent")),
+						Math.max(0, config.getInt("startRequest.retries")),
+						Math.max(0, config.getInt("startRequest.retryDelay"))),
+				Math.max(0, config.getInt("startQueue.maxPerHost")),
+				new Fallback(
+						config.getBoolean("fallback.loadAware"),
+						config.getBoolean("fallback.hold"),
+						getMaxHoldTime(plugin, config)),
+				new HttpEndpoint(
+						config.getBoolean("httpEndpoint.enabled"),
+						config.getString("httpEndpoint.address"),
+						config.getInt("httpEndpoint.port"),
+						config.getString("httpEndpoint.readyToken")),
+				new Prewarm(
+						config.getBoolean("prewarm.enabled"),
+						Math.max(0, config.getInt("prewarm.leadTime")),
+						prewarmThreshold),
+				new IdleShutdown(
+						config.getBoolean("idleShutdown.enabled"),
+						getInt(plugin, config, "idleShutdown.idleTime", 1, 600, "seconds"),
+						config.getString("idleShutdown.command")),
+				defaultServer,
+				Map.copyOf(servers)
+		);
+	}
+
+	private static int getMaxHoldTime(AutoServer plugin, PluginConfig config) {
+		int maxHoldTime = getInt(plugin, config, "fallback.maxHoldTime", 1, 25, "seconds");
+		// Held players don't get any packets so the proxy would time out their connection
+		int readTimeout = plugin.getProxy().getConfiguration().getReadTimeout() / 1000;
+		int limit = Math.max(1, readTimeout - 5);
+		if (maxHoldTime > limit) {
+			plugin.log(Level.WARNING, "fallback.maxHoldTime has to be lower than the read-timeout of " + readTimeout
+					+ " seconds in the Velocity config! Using " + limit + " seconds.");
+			return limit;
+		}
+		return maxHoldTime;
+	}
+
+	private static ServerSettings compileServer(AutoServer plugin, String serverName, ConfigurationNode node, ServerSettings defaults) {
+		List<String> fallbacks = new ArrayList<>();
+		for (ConfigurationNode fallback : node.node("fallbacks").childrenList()) {
+			String fallbackName = fallback.getString();
+			if (fallbackName != null && !fallbackName.isEmpty()) {
+				fallbacks.add(fallbackName);
+			}
+		}
+		String startUrl = node.node("startUrl").getString("");
+		if (!startUrl.isEmpty() && !isValidStartUrl(startUrl)) {
+			plugin.log(Level.WARNING, "Invalid servers." + serverName + ".startUrl value in config! It needs to be an http or https URL. Using the server's address instead.");
+			startUrl = "";
+		}
+		double weight = node.node("weight").getDouble(defaults.weight());
+		if (weight <= 0) {
+			plugin.log(Level.WARNING, "Invalid servers." + serverName + ".weight value in config! Using default value of " + defaults.weight() + ".");
+			weight = defaults.weight();
+		}
+		ConfigurationNode rcon = node.node("rcon");
+		return new ServerSettings(
+				getInt(plugin, node, "servers." + serverName + ".", "pingTimeout", 1, defaults.pingTimeout()),
+				getInt(plugin, node, "servers." + serverName + ".", "pingInterval", 1, defaults.pingInterval()),
+				getInt(plugin, node, "servers." + serverName + ".", "startTimeout", 1, defaults.startTimeout()),
+				startUrl.isEmpty() ? null : startUrl,
+				List.copyOf(fallbacks),
+				node.node("priority").getInt(defaults.priority()),
+				weight,
+				!rcon.virtual() && !rcon.node("password").getString("").isEmpty()
+						? new RconSettings(rcon.node("port").getInt(25575), rcon.node("password").getString(""))
+						: null
+		);
+	}
+
+	private static boolean isValidStartUrl(String startUrl) {
+		try {
+			URI uri = URI.create(startUrl);
+			return ("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme())) && uri.getHost() != null;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	private static int getInt(AutoServer plugin, ConfigurationNode parent, String prefix, String key, int min, int def) {
+		int value = parent.node(key).getInt(def);
+		if (value < min) {
+			plugin.log(Level.WARNING, "Invalid " + prefix + key + " value in config! Using default value of " + def + ".");
+			return def;
+		}
+		return value;
+	}
+
+	private static int getInt(AutoServer plugin, PluginConfig config, String path, int min, int def, String unit) {
+		int value = config.getInt(path);
+		if (value < min) {
+			plugin.log(Level.WARNING, "Invalid " + path + " value in config! Using default value of " + def + " " + unit + ".");
+			return def;
+		}
+		return value;
+	}
+}
@@ -0,0 +1,173 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+public class StartQueue {
+	private final AutoServer plugin;
+	private final Map<String, Host> hosts = new HashMap<>();
+	private ScheduledTask task;
+
+	public StartQueue(AutoServer plugin) {
+		this.plugin = plugin;
+	}
+
+	public void start() {
+		stop();
+		task = plugin.getProxy().getScheduler().buildTask(plugin, this::update)
+				.delay(1, TimeUnit.SECONDS)
+				.repeat(1, TimeUnit.SECONDS)
+				.schedule();
+	}
+
+	public void stop() {
+		if (task != null) {
+			task.cancel();
+			task = null;
+		}
+	}
+
+	/**
+	 * Queue the start of a server. It will be started as soon as its host has a free start slot.
+	 * @param server The server to start
+	 */
+	public void add(RegisteredServer server) {
+		List<RegisteredServer> toStart;
+		synchronized (this) {
+			Host host = hosts.computeIfAbsent(getHostName(server), h -> new Host());
+			String serverName = server.getServerInfo().getName();
+			if (host.running.containsKey(serverName) || host.queued.containsKey(serverName)) {
+				return;
+			}
+			host.queued.put(serverName, server);
+			toStart = poll(host);
+		}
+		toStart.forEach(plugin::dispatchStartRequest);
+	}
+
+	/**
+	 * Free the start slot of a server, e.g. because it is online now or failed to start
+	 * @param serverName The name of the server
+	 */
+	public void release(String serverName) {
+		List<RegisteredServer> toStart = new ArrayList<>();
+		synchronized (this) {
+			for (Host host : hosts.values()) {
+				if (host.running.remove(serverName) != null || host.queued.remove(serverName) != null) {
+					toStart.addAll(poll(host));
+				}
+			}
+		}
+		toStart.forEach(plugin::dispatchStartRequest);
+	}
+
+	/**
+	 * Get the position of a server in its host's queue
+	 * @param serverName The name of the server
+	 * @return The position starting at 1 or 0 if the server isn't waiting for a start slot
+	 */
+	public synchronized int getPosition(String serverName) {
+		for (Host host : hosts.values()) {
+			if (host.queued.containsKey(serverName)) {
+				return getSortedQueue(host).indexOf(host.queued.get(serverName)) + 1;
+			}
+		}
+		return 0;
+	}
+
+	private List<RegisteredServer> poll(Host host) {
+		List<RegisteredServer> toStart = new ArrayList<>();
+		int limit = plugin.getSettings().maxStartsPerHost();
+		while (!host.queued.isEmpty() && (limit <= 0 || host.running.size() < limit)) {
+			RegisteredServer server = getSortedQueue(host).get(0);
+			host.queued.remove(server.getServerInfo().getName());
+			host.running.put(server.getServerInfo().getName(), new RunningStart(server, System.currentTimeMillis()));
+			toStart.add(server);
+		}
+		return toStart;
+	}
+
+	private List<RegisteredServer> getSortedQueue(Host host) {
+		// Servers with the highest priority and then the most waiting players first, otherwise in the order they were queued
+		Settings settings = plugin.getSettings();
+		List<RegisteredServer> queue = new ArrayList<>(host.queued.values());
+		queue.sort(Comparator.comparingInt((RegisteredServer server) -> settings.getServer(server.getServerInfo().getName()).priority())
+				.thenComparingInt(server -> plugin.getWaitingPlayerCount(server.getServerInfo().getName()))
+				.reversed());
+		return queue;
+	}
+
+	private void update() {
+		List<RunningStart> running = new ArrayList<>();
+		synchronized (this) {
+			for (Host host : hosts.values()) {
+				running.addAll(host.running.values());
+			}
+		}
+		Settings settings = plugin.getSettings();
+		long now = System.currentTimeMillis();
+		for (RunningStart start : running) {
+			String serverName = start.server.getServerInfo().getName();
+			ServerSettings serverSettings = settings.getServer(serverName);
+			ServerStatus status = plugin.getStatusCache().getLastStatus(start.server);
+			if (status != null && status.online() && status.timestamp() >= start.startedAt) {
+				release(serverName);
+			} else if (now - start.startedAt > serverSettings.startTimeout() * 1000L) {
+				plugin.log(Level.WARNING, "Server " + serverName + " did not come online within " + serverSettings.startTimeout() + " seconds, freeing its start slot");
+				release(serverName);
+			} else if (!plugin.isWaitingFor(serverName) && (status == null || status.getAge() >= serverSettings.pingInterval() * 1000L)) {
+				// Nobody is polling this server, e.g. because it was prewarmed
+				plugin.getStatusCache().getStatus(start.server);
+			}
+		}
+	}
+
+	/**
+	 * Get the host which handles the start of a server, that's the one of its start URL if it has one
+	 */
+	private String getHostName(RegisteredServer server) {
+		String startUrl = plugin.getSettings().getServer(server.getServerInfo().getName()).startUrl();
+		if (startUrl != null) {
+			String host = URI.create(startUrl).getHost();
+			if (host != null) {
+				return host;
+			}
+		}
+		return server.getServerInfo().getAddress().getHostString();
+	}
+
+	private static class Host {
+		private final Map<String, RegisteredServer> queued = new LinkedHashMap<>();
+		private final Map<String, RunningStart> running = new HashMap<>();
+	}
+
+	private record RunningStart(RegisteredServer server, long startedAt) {}
+}
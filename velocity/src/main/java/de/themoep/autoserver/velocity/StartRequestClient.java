@@ -0,0 +1,164 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+public class StartRequestClient {
+	private final AutoServer plugin;
+	private final HttpClient httpClient;
+	private final Duration requestTimeout;
+	private final int retries;
+	private final long retryDelay;
+	private final Semaphore permits;
+	private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pending = new AtomicInteger();
+	private volatile boolean shutdown = false;
+
+	public StartRequestClient(AutoServer plugin, Settings.StartRequest settings) {
+		this.plugin = plugin;
+		this.httpClient = HttpClient.newBuilder()
+				.connectTimeout(Duration.ofSeconds(settings.connectTimeout()))
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.build();
+		this.requestTimeout = Duration.ofSeconds(settings.requestTimeout());
+		this.retries = settings.retries();
+		this.retryDelay = settings.retryDelay();
+		this.permits = new Semaphore(settings.maxConcurrent());
+	}
+
+	/**
+	 * Send a start request to a server
+	 * @param server The server to start
+	 * @return A future which is completed with <code>true</code> if the server accepted the request
+	 * or <code>false</code> if it failed after all retries
+	 */
+	public CompletableFuture<Boolean> sendStartRequest(RegisteredServer server) {
+		HttpRequest request;
+		String startUrl = plugin.getSettings().getServer(server.getServerInfo().getName()).startUrl();
+		try {
+			URI uri;
+			if (startUrl != null) {
+				uri = URI.create(startUrl);
+			} else {
+				uri = URI.create("http://" + server.getServerInfo().getAddress().getHostString() + ":" + server.getServerInfo().getAddress().getPort() + "/start");
+			}
+			request = HttpRequest.newBuilder(uri).GET().timeout(requestTimeout).build();
+		} catch (IllegalArgumentException e) {
+			plugin.log(Level.SEVERE, "Invalid start URL for server " + server.getServerInfo().getName() + ": "
+					+ (startUrl != null ? startUrl : server.getServerInfo().getAddress()), e);
+			return CompletableFuture.completedFuture(false);
+		}
+		CompletableFuture<Boolean> future = new CompletableFuture<>();
+		pending.incrementAndGet();
+		future.whenComplete((started, throwable) -> {
+			if (pending.decrementAndGet() == 0 && shutdown) {
+				httpClient.shutdown();
+			}
+		});
+		submit(() -> send(request, future, 0));
+		return future;
+	}
+
+	private void send(HttpRequest request, CompletableFuture<Boolean> future, int attempt) {
+		CompletableFuture<HttpResponse<Void>> sent;
+		try {
+			sent = httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+		} catch (RuntimeException e) {
+			// The permit would never be released if the request failed before it was sent
+			release();
+			plugin.log(Level.SEVERE, "Unable to send start request to " + request.uri(), e);
+			future.complete(false);
+			return;
+		}
+		sent.whenComplete((response, throwable) -> {
+			release();
+			if (throwable == null && response.statusCode() == 200) {
+				plugin.log(Level.INFO, "Sent start request to " + request.uri());
+				future.complete(true);
+				return;
+			}
+
+			if (throwable != null) {
+				plugin.log(Level.WARNING, "Failed to send start request to " + request.uri() + " (" + getMessage(throwable) + ")");
+			} else {
+				plugin.log(Level.WARNING, "Failed to send start request to " + request.uri() + " (HTTP " + response.statusCode() + ")");
+			}
+
+			// Only retry when the server wasn't reachable or had an internal error
+			if (attempt < retries && (throwable != null || response.statusCode() >= 500)) {
+				long delay = retryDelay << attempt;
+				CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+						.execute(() -> submit(() -> send(request, future, attempt + 1)));
+			} else {
+				future.complete(false);
+			}
+		});
+	}
+
+	private void submit(Runnable runnable) {
+		queue.add(runnable);
+		drain();
+	}
+
+	private void release() {
+		permits.release();
+		drain();
+	}
+
+	private void drain() {
+		while (!queue.isEmpty() && permits.tryAcquire()) {
+			Runnable runnable = queue.poll();
+			if (runnable != null) {
+				runnable.run();
+			} else {
+				permits.release();
+			}
+		}
+	}
+
+	private static String getMessage(Throwable throwable) {
+		Throwable cause = throwable.getCause() instanceof IOException ? throwable.getCause() : throwable;
+		return cause.getClass().getSimpleName() + (cause.getMessage() != null ? ": " + cause.getMessage() : "");
+	}
+
+	/**
+	 * Shut the client down once all requests it already accepted are done, including queued ones and retries
+	 */
+	public void shutdown() {
+		shutdown = true;
+		if (pending.get() == 0) {
+			httpClient.shutdown();
+		}
+	}
+}
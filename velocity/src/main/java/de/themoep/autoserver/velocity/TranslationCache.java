@@ -0,0 +1,53 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.minedown.adventure.MineDown;
+import de.themoep.utils.lang.LanguageConfig;
+import net.kyori.adventure.text.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches parsed translations which get shown to many players over and over again, like the titles of waiting players.
+ * Only use it for messages with a small set of possible replacements as entries are only removed on reload.
+ */
+public class TranslationCache {
+	private final Map<Key, Component> components = new ConcurrentHashMap<>();
+
+	/**
+	 * Get a parsed translation
+	 * @param config       The language to translate to
+	 * @param key          The key of the translation
+	 * @param replacements The placeholders and their replacements
+	 * @return The cached or newly parsed component
+	 */
+	public Component get(LanguageConfig<?> config, String key, String... replacements) {
+		return components.computeIfAbsent(new Key(config, key, List.of(replacements)),
+				k -> MineDown.parse(config.get(key), replacements));
+	}
+
+	public void clear() {
+		components.clear();
+	}
+
+	private record Key(LanguageConfig<?> config, String key, List<String> replacements) {}
+}
@@ -0,0 +1,124 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BootStatisticsTest {
+	private static final long INTERVAL = 5000;
+	private static final long MIN_INTERVAL = 1000;
+
+	@TempDir
+	Path folder;
+
+	@Test
+	public void unknownServersUseTheRegularInterval() {
+		BootStatistics statistics = new BootStatistics(folder.resolve("boot-statistics.dat"));
+		assertEquals(INTERVAL, statistics.getNextPingDelay("target", 0, INTERVAL, MIN_INTERVAL));
+		statistics.record("target", 60000);
+		assertEquals(INTERVAL, statistics.getNextPingDelay("target", -1, INTERVAL, MIN_INTERVAL));
+	}
+
+	@Test
+	public void delayDependsOnTheExpectedBootTime() {
+		BootStatistics statistics = new BootStatistics(folder.resolve("boot-statistics.dat"));
+		// One boot of 60 seconds assumes a deviation of 15 seconds, so the window is 30 to 90 seconds
+		statistics.record("target", 60000);
+		assertEquals(60000, statistics.getAverage("target"));
+
+		// Before the window at most twice the regular interval and never past its start
+		assertEquals(2 * INTERVAL, statistics.getNextPingDelay("target", 0, INTERVAL, MIN_INTERVAL));
+		assertEquals(INTERVAL, statistics.getNextPingDelay("target", 25000, INTERVAL, MIN_INTERVAL));
+		assertEquals(MIN_INTERVAL, statistics.getNextPingDelay("target", 29900, INTERVAL, MIN_INTERVAL));
+		// Inside it the 18 regular pings until its end minus the 3 used before it
+		assertEquals(4000, statistics.getNextPingDelay("target", 60000, INTERVAL, MIN_INTERVAL));
+		// And the regular interval after it
+		assertEquals(INTERVAL, statistics.getNextPingDelay("target", 95000, INTERVAL, MIN_INTERVAL));
+	}
+
+	@Test
+	public void neverPingsMoreOftenThanTheRegularInterval() {
+		BootStatistics statistics = new BootStatistics(folder.resolve("boot-statistics.dat"));
+		for (long bootTime : new long[]{2000, 15000, 45000, 60000, 180000}) {
+			statistics.record("server" + bootTime, bootTime);
+			for (long actual = 1000; actual <= 2 * bootTime; actual += 1000) {
+				int adaptive = 0;
+				for (long elapsed = 0; elapsed < actual; elapsed += statistics.getNextPingDelay("server" + bootTime, elapsed, INTERVAL, MIN_INTERVAL)) {
+					adaptive++;
+				}
+				long regular = (actual + INTERVAL - 1) / INTERVAL;
+				// Until the expected boot time it may not need more pings, after it the pings may be one off the regular ones
+				long allowed = actual <= bootTime ? regular : regular + 1;
+				assertTrue(adaptive <= allowed, "Boot of " + actual + "ms with an expected boot time of " + bootTime
+						+ "ms needed " + adaptive + " pings instead of " + regular);
+			}
+		}
+	}
+
+	@Test
+	public void averageFollowsNewBoots() {
+		BootStatistics statistics = new BootStatistics(folder.resolve("boot-statistics.dat"));
+		assertEquals(-1, statistics.getAverage("target"));
+		statistics.record("target", 60000);
+		statistics.record("target", 30000);
+		assertEquals(51000, statistics.getAverage("target"));
+	}
+
+	@Test
+	public void savedStatisticsCanBeLoaded() throws IOException {
+		Path file = folder.resolve("data").resolve("boot-statistics.dat");
+		BootStatistics statistics = new BootStatistics(file);
+		statistics.record("target", 60000);
+		statistics.record("target", 30000);
+		statistics.save();
+
+		BootStatistics loaded = new BootStatistics(file);
+		loaded.load();
+		assertEquals(statistics.getAverage("target"), loaded.getAverage("target"));
+		assertEquals(statistics.getNextPingDelay("target", 45000, INTERVAL, MIN_INTERVAL),
+				loaded.getNextPingDelay("target", 45000, INTERVAL, MIN_INTERVAL));
+	}
+
+	@Test
+	public void loadingWithoutAFileStartsEmpty() throws IOException {
+		BootStatistics statistics = new BootStatistics(folder.resolve("boot-statistics.dat"));
+		statistics.load();
+		assertEquals(-1, statistics.getAverage("target"));
+	}
+
+	@Test
+	public void unknownVersionsAreRejected() throws IOException {
+		Path file = folder.resolve("boot-statistics.dat");
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			out.writeInt(2);
+			out.writeInt(0);
+		}
+		assertThrows(IOException.class, () -> new BootStatistics(file).load());
+	}
+}
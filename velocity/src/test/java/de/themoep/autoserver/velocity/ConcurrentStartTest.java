@@ -0,0 +1,119 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import de.themoep.autoserver.velocity.ServerState.WakeState;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks that concurrent joins to an offline server only ever start it once
+ */
+public class ConcurrentStartTest {
+
+	private static final int THREADS = 100;
+
+	@Test
+	public void onlyOneConcurrentTryStartWins() throws Exception {
+		ServerState state = new ServerState("target");
+		List<Boolean> results = runConcurrently(() -> state.tryStart(TimeUnit.MINUTES.toMillis(1)));
+		assertEquals(1, results.stream().filter(Boolean::booleanValue).count());
+		assertEquals(WakeState.STARTING, state.getState());
+	}
+
+	@Test
+	public void concurrentJoinsSendOneStartRequest() throws Exception {
+		StubProxy proxy = new StubProxy(Runtime.getRuntime().availableProcessors());
+		try (FakeBackend backend = new FakeBackend(false)) {
+			RegisteredServer target = proxy.addServer("target", backend);
+			AutoServer plugin = proxy.createPlugin(null);
+			List<Player> players = new ArrayList<>();
+			for (int i = 0; i < THREADS; i++) {
+				players.add(proxy.createPlayer("Player" + i));
+			}
+			runConcurrently(players.stream().map(player -> (Task) () -> {
+				plugin.startServer(player, target);
+				return true;
+			}).toList());
+
+			long deadline = System.currentTimeMillis() + 5000;
+			while (backend.getStartRequests() == 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			// Give any duplicate request the time to arrive too
+			Thread.sleep(500);
+			assertEquals(1, backend.getStartRequests());
+		} finally {
+			proxy.shutdown();
+		}
+	}
+
+	private static List<Boolean> runConcurrently(Task task) throws Exception {
+		List<Task> tasks = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			tasks.add(task);
+		}
+		return runConcurrently(tasks);
+	}
+
+	/**
+	 * Run all tasks on their own thread and release them at the same time
+	 * @param tasks The tasks to run
+	 * @return The results of the tasks
+	 */
+	private static List<Boolean> runConcurrently(List<Task> tasks) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+		try {
+			CountDownLatch ready = new CountDownLatch(tasks.size());
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<Boolean>> futures = new ArrayList<>();
+			for (Task task : tasks) {
+				futures.add(executor.submit(() -> {
+					ready.countDown();
+					start.await();
+					return task.run();
+				}));
+			}
+			ready.await();
+			start.countDown();
+			List<Boolean> results = new ArrayList<>();
+			for (Future<Boolean> future : futures) {
+				results.add(future.get(10, TimeUnit.SECONDS));
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private interface Task {
+		boolean run() throws Exception;
+	}
+}
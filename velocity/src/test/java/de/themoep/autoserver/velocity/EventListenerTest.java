@@ -0,0 +1,81 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.event.player.ServerConnectedEvent;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class EventListenerTest {
+	private StubProxy proxy;
+	private FakeBackend lobbyBackend;
+	private FakeBackend targetBackend;
+	private AutoServer plugin;
+	private EventListener listener;
+	private RegisteredServer lobby;
+	private RegisteredServer target;
+	private RegisteredServer other;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		proxy = new StubProxy(1);
+		lobbyBackend = new FakeBackend(true);
+		targetBackend = new FakeBackend(false);
+		// The lobby is only a fallback of the target, it isn't in Velocity's try list
+		lobby = proxy.addServer("lobby", lobbyBackend);
+		target = proxy.addServer("target", targetBackend);
+		other = proxy.addServer("other", lobbyBackend);
+		plugin = proxy.createPlugin("""
+				servers:
+				  target:
+				    fallbacks: [lobby]
+				""");
+		listener = proxy.getListener(EventListener.class);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		proxy.shutdown();
+		lobbyBackend.close();
+		targetBackend.close();
+	}
+
+	@Test
+	public void joiningTheFallbackKeepsWaiting() {
+		Player player = proxy.createPlayer("Player");
+		plugin.startServer(player, target);
+		listener.onServerSwitch(new ServerConnectedEvent(player, lobby, null));
+		assertEquals("target", plugin.getWaitingFor(player.getUniqueId()));
+	}
+
+	@Test
+	public void switchingAwayFromAFallbackStopsWaiting() {
+		Player player = proxy.createPlayer("Player");
+		plugin.startServer(player, target);
+		listener.onServerSwitch(new ServerConnectedEvent(player, lobby, null));
+		listener.onServerSwitch(new ServerConnectedEvent(player, other, lobby));
+		assertNull(plugin.getWaitingFor(player.getUniqueId()));
+	}
+}
@@ -0,0 +1,85 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.sun.net.httpserver.HttpServer;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import net.kyori.adventure.text.Component;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local backend which accepts start requests like the AutoServer application
+ * and answers pings without any network round trip
+ */
+public class FakeBackend implements AutoCloseable {
+	private static final ServerPing ONLINE_PING = ServerPing.builder()
+			.version(new ServerPing.Version(767, "1.21.1"))
+			.onlinePlayers(0)
+			.maximumPlayers(20)
+			.description(Component.text("A Minecraft Server"))
+			.build();
+	// The application answers with a negative protocol version while the server is sleeping
+	private static final ServerPing SLEEPING_PING = ServerPing.builder()
+			.version(new ServerPing.Version(-1, "Sleeping"))
+			.onlinePlayers(0)
+			.maximumPlayers(20)
+			.description(Component.text("Sleeping, join to wake it up!"))
+			.build();
+
+	private final HttpServer httpServer;
+	private final AtomicInteger startRequests = new AtomicInteger();
+	private volatile boolean online;
+
+	public FakeBackend(boolean online) throws IOException {
+		this.online = online;
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		httpServer.createContext("/start", exchange -> {
+			startRequests.incrementAndGet();
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+		});
+		httpServer.start();
+	}
+
+	public InetSocketAddress getAddress() {
+		return httpServer.getAddress();
+	}
+
+	public CompletableFuture<ServerPing> ping() {
+		return CompletableFuture.completedFuture(online ? ONLINE_PING : SLEEPING_PING);
+	}
+
+	public void setOnline(boolean online) {
+		this.online = online;
+	}
+
+	public int getStartRequests() {
+		return startRequests.get();
+	}
+
+	@Override
+	public void close() {
+		httpServer.stop(0);
+	}
+}
@@ -0,0 +1,100 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class JoinHistoryTest {
+	private static final ZonedDateTime MONDAY_EVENING = ZonedDateTime.of(2024, 6, 3, 18, 30, 0, 0, ZoneOffset.UTC);
+	private static final double DELTA = 0.0001;
+
+	@TempDir
+	Path folder;
+
+	@Test
+	public void joinsAreCountedPerHourOfTheWeek() {
+		JoinHistory history = new JoinHistory(folder.resolve("join-history.dat"));
+		history.record("target", MONDAY_EVENING);
+		history.record("target", MONDAY_EVENING.plusMinutes(20));
+
+		// The weekly average of a series that halves every week is half of the current week's count
+		assertEquals(1, history.getExpectedJoins("target", MONDAY_EVENING), DELTA);
+		assertEquals(0, history.getExpectedJoins("target", MONDAY_EVENING.plusHours(1)), DELTA);
+		assertEquals(0, history.getExpectedJoins("target", MONDAY_EVENING.plusDays(1)), DELTA);
+		assertEquals(0, history.getExpectedJoins("other", MONDAY_EVENING), DELTA);
+	}
+
+	@Test
+	public void olderWeeksDecay() {
+		JoinHistory history = new JoinHistory(folder.resolve("join-history.dat"));
+		history.record("target", MONDAY_EVENING);
+		assertEquals(0.5, history.getExpectedJoins("target", MONDAY_EVENING), DELTA);
+		assertEquals(0.25, history.getExpectedJoins("target", MONDAY_EVENING.plusWeeks(1)), DELTA);
+		assertEquals(0.125, history.getExpectedJoins("target", MONDAY_EVENING.plusWeeks(2)), DELTA);
+
+		history.record("target", MONDAY_EVENING.plusWeeks(1));
+		assertEquals(0.75, history.getExpectedJoins("target", MONDAY_EVENING.plusWeeks(1)), DELTA);
+	}
+
+	@Test
+	public void savedHistoryCanBeLoaded() throws IOException {
+		Path file = folder.resolve("data").resolve("join-history.dat");
+		JoinHistory history = new JoinHistory(file);
+		history.record("target", MONDAY_EVENING);
+		history.record("target", MONDAY_EVENING.plusWeeks(1));
+		history.record("other", MONDAY_EVENING.plusDays(3));
+		history.save();
+
+		JoinHistory loaded = new JoinHistory(file);
+		loaded.load();
+		for (ZonedDateTime time : new ZonedDateTime[]{MONDAY_EVENING.plusWeeks(1), MONDAY_EVENING.plusWeeks(3), MONDAY_EVENING.plusDays(3)}) {
+			assertEquals(history.getExpectedJoins("target", time), loaded.getExpectedJoins("target", time), DELTA);
+			assertEquals(history.getExpectedJoins("other", time), loaded.getExpectedJoins("other", time), DELTA);
+		}
+	}
+
+	@Test
+	public void unchangedHistoryIsNotSaved() throws IOException {
+		Path file = folder.resolve("join-history.dat");
+		new JoinHistory(file).save();
+		assertFalse(Files.exists(file));
+	}
+
+	@Test
+	public void unknownVersionsAreRejected() throws IOException {
+		Path file = folder.resolve("join-history.dat");
+		try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+			out.writeInt(2);
+			out.writeInt(0);
+		}
+		assertThrows(IOException.class, () -> new JoinHistory(file).load());
+	}
+}
@@ -0,0 +1,89 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import de.themoep.autoserver.velocity.ServerState.WakeState;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ServerStateTest {
+
+	@Test
+	public void startsOffline() {
+		ServerState state = new ServerState("target");
+		assertEquals(WakeState.OFFLINE, state.getState());
+		assertEquals(-1, state.getRequestSentAt());
+	}
+
+	@Test
+	public void onlyTheFirstStartWinsUntilTheTimeout() {
+		ServerState state = new ServerState("target");
+		assertTrue(state.tryStart(60000));
+		assertEquals(WakeState.STARTING, state.getState());
+		assertFalse(state.tryStart(60000));
+		// A start that took longer than the timeout can be retried
+		assertTrue(state.tryStart(0));
+		assertEquals(WakeState.STARTING, state.getState());
+	}
+
+	@Test
+	public void startResetsTheRequestTime() {
+		ServerState state = new ServerState("target");
+		state.setRequestSentAt(1234);
+		assertTrue(state.tryStart(60000));
+		assertEquals(-1, state.getRequestSentAt());
+	}
+
+	@Test
+	public void setReturnsThePreviousState() {
+		ServerState state = new ServerState("target");
+		state.tryStart(60000);
+		assertEquals(WakeState.STARTING, state.setOnline());
+		assertEquals(WakeState.ONLINE, state.setOnline());
+		assertEquals(WakeState.ONLINE, state.setOffline());
+		assertEquals(WakeState.OFFLINE, state.getState());
+	}
+
+	@Test
+	public void settingTheSameStateKeepsItsTime() throws InterruptedException {
+		ServerState state = new ServerState("target");
+		state.setOnline();
+		long since = state.getStateSince();
+		Thread.sleep(5);
+		state.setOnline();
+		assertEquals(since, state.getStateSince());
+	}
+
+	@Test
+	public void failedPingsOnlyTakeOnlineServersOffline() {
+		ServerState state = new ServerState("target");
+		assertFalse(state.setOfflineIfOnline());
+
+		state.tryStart(60000);
+		assertFalse(state.setOfflineIfOnline());
+		assertEquals(WakeState.STARTING, state.getState());
+
+		state.setOnline();
+		assertTrue(state.setOfflineIfOnline());
+		assertEquals(WakeState.OFFLINE, state.getState());
+	}
+}
@@ -0,0 +1,132 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SettingsTest {
+	private StubProxy proxy;
+
+	@BeforeEach
+	public void setUp() {
+		proxy = new StubProxy(1);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		proxy.shutdown();
+	}
+
+	@Test
+	public void missingValuesUseTheDefaultConfig() throws Exception {
+		Settings settings = proxy.createPlugin("pingInterval: 20\n").getSettings();
+		assertEquals(20, settings.defaultServer().pingInterval());
+		assertEquals(3, settings.defaultServer().pingTimeout());
+		assertEquals(180, settings.defaultServer().startTimeout());
+		assertEquals(new Settings.StartRequest(5, 10, 4, 2, 500), settings.startRequest());
+		assertFalse(settings.adaptivePing().enabled());
+		assertFalse(settings.fallback().loadAware());
+	}
+
+	@Test
+	public void invalidValuesUseTheirDefaults() throws Exception {
+		Settings settings = proxy.createPlugin("""
+				pingTimeout: 0
+				pingInterval: -5
+				statusCache:
+				  onlineTtl: -1
+				prewarm:
+				  threshold: 0
+				startRequest:
+				  maxConcurrent: 0
+				  retries: -1
+				""").getSettings();
+		assertEquals(3, settings.defaultServer().pingTimeout());
+		assertEquals(10, settings.defaultServer().pingInterval());
+		assertEquals(10, settings.statusCache().onlineTtl());
+		assertEquals(3, settings.prewarm().threshold());
+		assertEquals(1, settings.startRequest().maxConcurrent());
+		assertEquals(0, settings.startRequest().retries());
+	}
+
+	@Test
+	public void holdTimeStaysBelowTheReadTimeout() throws Exception {
+		// The stub proxy has Velocity's default read timeout of 30 seconds
+		assertEquals(25, proxy.createPlugin("fallback:\n  maxHoldTime: 100\n").getSettings().fallback().maxHoldTime());
+	}
+
+	@Test
+	public void serversOverrideTheGlobalValues() throws Exception {
+		Settings settings = proxy.createPlugin("""
+				pingTimeout: 7
+				servers:
+				  lobby:
+				    pingInterval: 5
+				    startUrl: "https://host.example.com:8080/start"
+				    fallbacks: [hub, "", limbo]
+				    priority: 2
+				    weight: 3
+				    rcon:
+				      password: secret
+				""").getSettings();
+		ServerSettings lobby = settings.getServer("lobby");
+		assertEquals(7, lobby.pingTimeout());
+		assertEquals(5, lobby.pingInterval());
+		assertEquals(180, lobby.startTimeout());
+		assertEquals("https://host.example.com:8080/start", lobby.startUrl());
+		assertEquals(List.of("hub", "limbo"), lobby.fallbacks());
+		assertEquals(2, lobby.priority());
+		assertEquals(3, lobby.weight());
+		assertEquals(new RconSettings(25575, "secret"), lobby.rcon());
+	}
+
+	@Test
+	public void unknownServersUseTheDefaults() throws Exception {
+		Settings settings = proxy.createPlugin("servers: {}\n").getSettings();
+		assertSame(settings.defaultServer(), settings.getServer("unknown"));
+	}
+
+	@Test
+	public void invalidServerValuesUseTheDefaults() throws Exception {
+		Settings settings = proxy.createPlugin("""
+				servers:
+				  lobby:
+				    pingInterval: 0
+				    startUrl: "ftp://host.example.com/start"
+				    weight: -1
+				    rcon:
+				      port: 25576
+				""").getSettings();
+		ServerSettings lobby = settings.getServer("lobby");
+		assertEquals(10, lobby.pingInterval());
+		assertNull(lobby.startUrl());
+		assertEquals(1, lobby.weight());
+		// RCON without a password can't be used
+		assertNull(lobby.rcon());
+	}
+}
@@ -0,0 +1,90 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StartQueueTest {
+	private StubProxy proxy;
+	private FakeBackend first;
+	private FakeBackend second;
+	private FakeBackend remote;
+
+	@BeforeEach
+	public void setUp() throws Exception {
+		proxy = new StubProxy(1);
+		first = new FakeBackend(false);
+		second = new FakeBackend(false);
+		remote = new FakeBackend(false);
+	}
+
+	@AfterEach
+	public void tearDown() throws Exception {
+		proxy.shutdown();
+		first.close();
+		second.close();
+		remote.close();
+	}
+
+	@Test
+	public void serversOnTheSameHostWaitForAFreeSlot() throws Exception {
+		RegisteredServer firstServer = proxy.addServer("first", first);
+		RegisteredServer secondServer = proxy.addServer("second", second);
+		AutoServer plugin = proxy.createPlugin("startQueue:\n  maxPerHost: 1\n");
+
+		plugin.getStartQueue().add(firstServer);
+		plugin.getStartQueue().add(secondServer);
+		awaitStartRequest(first);
+		assertEquals(0, second.getStartRequests());
+		assertEquals(1, plugin.getStartQueue().getPosition("second"));
+	}
+
+	@Test
+	public void serversAreLimitedByTheHostOfTheirStartUrl() throws Exception {
+		RegisteredServer firstServer = proxy.addServer("first", first);
+		// Its game port is on the same host as the first one but it gets started by another machine
+		RegisteredServer remoteServer = proxy.addServer("remote", second);
+		AutoServer plugin = proxy.createPlugin("""
+				startQueue:
+				  maxPerHost: 1
+				servers:
+				  remote:
+				    startUrl: "http://localhost:%d/start"
+				""".formatted(remote.getAddress().getPort()));
+
+		plugin.getStartQueue().add(firstServer);
+		plugin.getStartQueue().add(remoteServer);
+		awaitStartRequest(first);
+		awaitStartRequest(remote);
+		assertEquals(0, plugin.getStartQueue().getPosition("remote"));
+	}
+
+	private static void awaitStartRequest(FakeBackend backend) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (backend.getStartRequests() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(1, backend.getStartRequests());
+	}
+}
@@ -0,0 +1,335 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import com.velocitypowered.api.command.CommandManager;
+import com.velocitypowered.api.event.EventManager;
+import com.velocitypowered.api.event.proxy.ProxyInitializeEvent;
+import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
+import com.velocitypowered.api.proxy.ConnectionRequestBuilder;
+import com.velocitypowered.api.proxy.Player;
+import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.config.ProxyConfig;
+import com.velocitypowered.api.proxy.server.RegisteredServer;
+import com.velocitypowered.api.proxy.server.ServerInfo;
+import com.velocitypowered.api.proxy.server.ServerPing;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import com.velocitypowered.api.scheduler.Scheduler;
+import com.velocitypowered.api.scheduler.TaskStatus;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * A minimal proxy that is just capable enough to run the plugin outside of Velocity
+ */
+public class StubProxy {
+	private final ScheduledExecutorService executor;
+	private final int schedulerThreads;
+	private final LongAdder schedulerBusyNanos = new LongAdder();
+	private final Map<String, RegisteredServer> servers = new ConcurrentHashMap<>();
+	private final Map<UUID, Player> players = new ConcurrentHashMap<>();
+	private final List<String> attemptConnectionOrder = new CopyOnWriteArrayList<>();
+	private final List<Object> listeners = new CopyOnWriteArrayList<>();
+	private final ProxyServer proxy;
+	private volatile BiFunction<Player, RegisteredServer, CompletableFuture<Boolean>> connector = (player, server) -> CompletableFuture.completedFuture(true);
+	private volatile Consumer<Player> disconnectHandler = player -> {};
+	private AutoServer plugin;
+	private Path dataFolder;
+
+	public StubProxy(int schedulerThreads) {
+		this.schedulerThreads = schedulerThreads;
+		executor = Executors.newScheduledThreadPool(schedulerThreads, runnable -> {
+			Thread thread = new Thread(runnable, "stub-proxy-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		ProxyConfig config = Stubs.create(ProxyConfig.class, Map.of(
+				"getAttemptConnectionOrder", args -> attemptConnectionOrder,
+				"getReadTimeout", args -> 30000
+		));
+		Scheduler scheduler = Stubs.create(Scheduler.class, Map.of(
+				"buildTask", args -> new TaskBuilderState(args[1]).builder
+		));
+		EventManager eventManager = Stubs.create(EventManager.class, Map.of(
+				"register", args -> listeners.add(args[1])
+		));
+		CommandManager commandManager = Stubs.create(CommandManager.class, Map.of());
+		proxy = Stubs.create(ProxyServer.class, Map.of(
+				"getPlayer", args -> args[0] instanceof UUID playerId
+						? Optional.ofNullable(players.get(playerId))
+						: players.values().stream().filter(player -> player.getUsername().equalsIgnoreCase((String) args[0])).findAny(),
+				"getAllPlayers", args -> List.copyOf(players.values()),
+				"getPlayerCount", args -> players.size(),
+				"getServer", args -> Optional.ofNullable(servers.get(((String) args[0]).toLowerCase(Locale.ROOT))),
+				"getAllServers", args -> List.copyOf(servers.values()),
+				"getConfiguration", args -> config,
+				"getScheduler", args -> scheduler,
+				"getEventManager", args -> eventManager,
+				"getCommandManager", args -> commandManager
+		));
+	}
+
+	public ProxyServer getProxy() {
+		return proxy;
+	}
+
+	/**
+	 * Register a server with the proxy
+	 * @param name    The name of the server
+	 * @param address The address the server listens on
+	 * @param pinger  Supplies the answer to a status ping
+	 * @return The registered server
+	 */
+	public RegisteredServer addServer(String name, InetSocketAddress address, Supplier<CompletableFuture<ServerPing>> pinger) {
+		ServerInfo info = new ServerInfo(name, address);
+		RegisteredServer server = Stubs.create(RegisteredServer.class, Map.of(
+				"getServerInfo", args -> info,
+				"ping", args -> pinger.get()
+		));
+		servers.put(name.toLowerCase(Locale.ROOT), server);
+		return server;
+	}
+
+	public RegisteredServer addServer(String name, FakeBackend backend) {
+		return addServer(name, backend.getAddress(), backend::ping);
+	}
+
+	public void setAttemptConnectionOrder(String... serverNames) {
+		attemptConnectionOrder.clear();
+		attemptConnectionOrder.addAll(List.of(serverNames));
+	}
+
+	/**
+	 * Set what happens when a player gets connected to a server
+	 * @param connector Completes with whether the connection was successful
+	 */
+	public void setConnector(BiFunction<Player, RegisteredServer, CompletableFuture<Boolean>> connector) {
+		this.connector = connector;
+	}
+
+	/**
+	 * Set what happens when the plugin disconnects a player
+	 * @param disconnectHandler Called with the player after they got removed from the proxy
+	 */
+	public void setDisconnectHandler(Consumer<Player> disconnectHandler) {
+		this.disconnectHandler = disconnectHandler;
+	}
+
+	public Player createPlayer(String name) {
+		UUID playerId = UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8));
+		Player[] player = new Player[1];
+		player[0] = Stubs.create(Player.class, Map.of(
+				"getUsername", args -> name,
+				"getUniqueId", args -> playerId,
+				"getEffectiveLocale", args -> Locale.ENGLISH,
+				"isActive", args -> players.containsKey(playerId),
+				"disconnect", args -> {
+					players.remove(playerId);
+					disconnectHandler.accept(player[0]);
+					return null;
+				},
+				"createConnectionRequest", args -> createConnectionRequest(player[0], (RegisteredServer) args[0])
+		));
+		players.put(playerId, player[0]);
+		return player[0];
+	}
+
+	public void removePlayer(Player player) {
+		players.remove(player.getUniqueId());
+	}
+
+	private ConnectionRequestBuilder createConnectionRequest(Player player, RegisteredServer server) {
+		return Stubs.create(ConnectionRequestBuilder.class, Map.of(
+				"getServer", args -> server,
+				"connect", args -> connector.apply(player, server).thenApply(success -> createResult(server, success)),
+				"connectWithIndication", args -> connector.apply(player, server),
+				"fireAndForget", args -> connector.apply(player, server)
+		));
+	}
+
+	private static ConnectionRequestBuilder.Result createResult(RegisteredServer server, boolean success) {
+		ConnectionRequestBuilder.Status status = success ? ConnectionRequestBuilder.Status.SUCCESS : ConnectionRequestBuilder.Status.SERVER_DISCONNECTED;
+		return Stubs.create(ConnectionRequestBuilder.Result.class, Map.of(
+				"isSuccessful", args -> success,
+				"getStatus", args -> status,
+				"getAttemptedConnection", args -> server
+		));
+	}
+
+	/**
+	 * Create the plugin in a temporary data folder and initialize it like the proxy would
+	 * @param config The config.yml to use or <code>null</code> to use the default one
+	 * @return The initialized plugin
+	 */
+	public AutoServer createPlugin(String config) throws IOException, ReflectiveOperationException {
+		dataFolder = Files.createTempDirectory("autoserver-stub");
+		if (config != null) {
+			Files.writeString(dataFolder.resolve("config.yml"), config);
+		}
+		plugin = new AutoServer();
+		inject(plugin, "proxy", proxy);
+		inject(plugin, "slf4jLogger", LoggerFactory.getLogger("AutoServer"));
+		inject(plugin, "dataFolder", dataFolder);
+		plugin.onProxyInitialization(new ProxyInitializeEvent());
+		return plugin;
+	}
+
+	private static void inject(Object target, String fieldName, Object value) throws ReflectiveOperationException {
+		Field field = target.getClass().getDeclaredField(fieldName);
+		field.setAccessible(true);
+		field.set(target, value);
+	}
+
+	public int getSchedulerThreads() {
+		return schedulerThreads;
+	}
+
+	/**
+	 * Get the time the scheduler threads spent running tasks
+	 * @return The busy time in nanoseconds
+	 */
+	public long getSchedulerBusyNanos() {
+		return schedulerBusyNanos.sum();
+	}
+
+	public <T> T getListener(Class<T> type) {
+		for (Object listener : listeners) {
+			if (type.isInstance(listener)) {
+				return type.cast(listener);
+			}
+		}
+		throw new IllegalStateException("No listener of type " + type.getName() + " registered");
+	}
+
+	/**
+	 * Shut down the plugin and the scheduler and delete the plugin's data folder
+	 */
+	public void shutdown() throws IOException {
+		if (plugin != null) {
+			plugin.onProxyShutdown(new ProxyShutdownEvent());
+		}
+		executor.shutdownNow();
+		if (dataFolder != null) {
+			try (Stream<Path> paths = Files.walk(dataFolder)) {
+				for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+					Files.delete(path);
+				}
+			}
+		}
+	}
+
+	private class TaskBuilderState {
+		private final Object task;
+		private final Scheduler.TaskBuilder builder;
+		private long delay = 0;
+		private long repeat = 0;
+
+		private TaskBuilderState(Object task) {
+			this.task = task;
+			builder = Stubs.create(Scheduler.TaskBuilder.class, Map.of(
+					"delay", args -> {
+						delay = toMillis(args);
+						return builder();
+					},
+					"repeat", args -> {
+						repeat = toMillis(args);
+						return builder();
+					},
+					"clearDelay", args -> {
+						delay = 0;
+						return builder();
+					},
+					"clearRepeat", args -> {
+						repeat = 0;
+						return builder();
+					},
+					"schedule", args -> schedule()
+			));
+		}
+
+		private Scheduler.TaskBuilder builder() {
+			return builder;
+		}
+
+		private long toMillis(Object[] args) {
+			if (args.length == 1) {
+				return ((Duration) args[0]).toMillis();
+			}
+			return ((TimeUnit) args[1]).toMillis((Long) args[0]);
+		}
+
+		@SuppressWarnings("unchecked")
+		private ScheduledTask schedule() {
+			AtomicReference<ScheduledFuture<?>> future = new AtomicReference<>();
+			ScheduledTask scheduledTask = Stubs.create(ScheduledTask.class, Map.of(
+					"plugin", args -> plugin,
+					"status", args -> future.get() == null ? TaskStatus.SCHEDULED
+							: future.get().isCancelled() ? TaskStatus.CANCELLED
+							: future.get().isDone() ? TaskStatus.FINISHED : TaskStatus.SCHEDULED,
+					"cancel", args -> future.get() != null && future.get().cancel(false)
+			));
+			Runnable runnable = () -> {
+				long start = System.nanoTime();
+				try {
+					if (task instanceof Runnable r) {
+						r.run();
+					} else {
+						((Consumer<ScheduledTask>) task).accept(scheduledTask);
+					}
+				} catch (Throwable e) {
+					LoggerFactory.getLogger("StubProxy").error("Exception in scheduled task", e);
+				} finally {
+					schedulerBusyNanos.add(System.nanoTime() - start);
+				}
+			};
+			if (repeat > 0) {
+				future.set(executor.scheduleAtFixedRate(runnable, delay, repeat, TimeUnit.MILLISECONDS));
+			} else {
+				future.set(executor.schedule(runnable, delay, TimeUnit.MILLISECONDS));
+			}
+			return scheduledTask;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package de.themoep.autoserver.velocity;
+
+/*
+ * AutoServer - velocity
+ * Copyright (c) 2024 Max Lee aka Phoenix616 (max@themoep.de)
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Creates implementations of API interfaces which only answer the methods that are actually needed.
+ * Using dynamic proxies keeps the stubs working when the API adds new abstract methods.
+ */
+public final class Stubs {
+
+	private Stubs() {}
+
+	/**
+	 * Create a stub of an interface
+	 * @param type    The interface to stub
+	 * @param answers The answers for methods by their name, methods without an answer return default values
+	 * @return The stub
+	 */
+	public static <T> T create(Class<T> type, Map<String, Function<Object[], Object>> answers) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+			Function<Object[], Object> answer = answers.get(method.getName());
+			if (answer != null) {
+				return answer.apply(args != null ? args : new Object[0]);
+			}
+			switch (method.getName()) {
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return type.getSimpleName() + "Stub@" + Integer.toHexString(System.identityHashCode(proxy));
+			}
+			return defaultValue(method.getReturnType());
+		}));
+	}
+
+	private static Object defaultValue(Class<?> type) {
+		if (type == boolean.class) {
+			return false;
+		} else if (type == char.class) {
+			return '\0';
+		} else if (type == byte.class) {
+			return (byte) 0;
+		} else if (type == short.class) {
+			return (short) 0;
+		} else if (type == int.class) {
+			return 0;
+		} else if (type == long.class) {
+			return 0L;
+		} else if (type == float.class) {
+			return 0f;
+		} else if (type == double.class) {
+			return 0d;
+		} else if (type == Optional.class) {
+			return Optional.empty();
+		} else if (type == Set.class) {
+			return Set.of();
+		} else if (type == Map.class) {
+			return Map.of();
+		} else if (type == List.class || type == Collection.class) {
+			return List.of();
+		}
+		return null;
+	}
+}